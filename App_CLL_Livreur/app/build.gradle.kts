@@ -31,6 +31,11 @@ android {
         buildConfigField("String", "MAPS_API_KEY", "\"$googleMapsApiKey\"")
         manifestPlaceholders["MAPS_API_KEY"] = googleMapsApiKey
 
+        // URL de l'API Amazi ; pointer vers tools/amazi-stub (ex. http://10.0.2.2:30080/) pour tester sans le vrai backend
+        val amaziBaseUrl = localProperties.getProperty("AMAZI_BASE_URL")
+            ?: "http://192.168.8.55:30080/"
+        buildConfigField("String", "AMAZI_BASE_URL", "\"$amaziBaseUrl\"")
+
     }
 
     buildFeatures {
@@ -0,0 +1,123 @@
+package data.api;
+
+import com.google.gson.Gson;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * App-scoped provider for the HTTP stack shared by every service class.
+ * <p>
+ * All clients handed out here derive from a single {@link OkHttpClient}, so they
+ * share one {@link ConnectionPool} (keep-alive, HTTP/2 multiplexing) and one
+ * {@link Dispatcher} thread pool. A tour of scans therefore reuses warm
+ * connections instead of paying a new TCP/TLS handshake per request.
+ * </p>
+ */
+public final class HttpClientProvider {
+
+    /** Maximum number of idle connections kept alive in the shared pool. */
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+
+    /** How long an idle connection is kept before being evicted. */
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final Gson GSON = new Gson();
+    private static final GsonConverterFactory GSON_CONVERTER = GsonConverterFactory.create(GSON);
+
+    private static volatile OkHttpClient baseClient;
+    private static volatile OkHttpClient authenticatedClient;
+
+    private HttpClientProvider() { }
+
+    /**
+     * Returns the shared base client (no authentication header).
+     *
+     * @return the app-wide {@link OkHttpClient}
+     */
+    public static OkHttpClient getBaseClient() {
+        if (baseClient == null) {
+            synchronized (HttpClientProvider.class) {
+                if (baseClient == null) {
+                    baseClient = new OkHttpClient.Builder()
+                            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                            .retryOnConnectionFailure(true)
+                            .connectTimeout(15, TimeUnit.SECONDS)
+                            .readTimeout(20, TimeUnit.SECONDS)
+                            .build();
+                }
+            }
+        }
+        return baseClient;
+    }
+
+    /**
+     * Returns a client sharing the base pool and dispatcher that adds the
+     * bearer token of the current session to every request.
+     *
+     * @return the authenticated {@link OkHttpClient}
+     */
+    public static OkHttpClient getAuthenticatedClient() {
+        if (authenticatedClient == null) {
+            synchronized (HttpClientProvider.class) {
+                if (authenticatedClient == null) {
+                    authenticatedClient = getBaseClient().newBuilder()
+                            .addInterceptor(new TokenInterceptor())
+                            .build();
+                }
+            }
+        }
+        return authenticatedClient;
+    }
+
+    /**
+     * Returns the Gson instance shared by all Retrofit converters.
+     *
+     * @return the shared {@link Gson}
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    /**
+     * Builds a Retrofit instance on top of the given shared client.
+     *
+     * @param baseUrl the base URL of the API
+     * @param client  one of the clients provided by this class
+     * @return a configured {@link Retrofit}
+     */
+    public static Retrofit createRetrofit(String baseUrl, OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(GSON_CONVERTER)
+                .build();
+    }
+
+    /**
+     * Builds a Retrofit instance on top of the given shared client, with a dedicated
+     * converter tried before the shared Gson converter.
+     *
+     * @param baseUrl   the base URL of the API
+     * @param client    one of the clients provided by this class
+     * @param converter a converter for the types that must not go through reflective Gson
+     * @return a configured {@link Retrofit}
+     */
+    public static Retrofit createRetrofit(String baseUrl, OkHttpClient client, Converter.Factory converter) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(converter)
+                .addConverterFactory(GSON_CONVERTER)
+                .build();
+    }
+}
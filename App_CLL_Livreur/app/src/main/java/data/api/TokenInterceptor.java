@@ -0,0 +1,33 @@
+package data.api;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import utils.TokenHolder;
+
+/**
+ * OkHttp interceptor adding the bearer token of the current session.
+ * <p>
+ * The token is read from {@link TokenHolder} on every request rather than
+ * captured at construction time, so a single client survives re-logins.
+ * </p>
+ */
+public class TokenInterceptor implements Interceptor {
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request original = chain.request();
+        if (!TokenHolder.hasToken()) {
+            return chain.proceed(original);
+        }
+        Request requestWithAuth = original.newBuilder()
+                .header("Authorization", "Bearer " + TokenHolder.getToken())
+                .build();
+        return chain.proceed(requestWithAuth);
+    }
+}
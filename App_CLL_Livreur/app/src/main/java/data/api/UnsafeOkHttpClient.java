@@ -8,16 +8,33 @@ import okhttp3.OkHttpClient;
 
 /**
  * Provides an OkHttpClient instance that bypasses SSL certificate validation.
+ * <p>
+ * The client is derived from {@link HttpClientProvider#getBaseClient()} so it
+ * shares the app-wide connection pool and dispatcher.
+ * </p>
  */
 public class UnsafeOkHttpClient {
+    private static volatile OkHttpClient unsafeClient;
+
     /**
-     * Creates and returns an OkHttpClient configured to trust all SSL certificates
-     * and hostnames.
+     * Returns an OkHttpClient configured to trust all SSL certificates
+     * and hostnames. The instance is created once and then reused.
      *
      * @return an OkHttpClient instance that skips SSL certificate and hostname verification
      * @throws RuntimeException if an SSLContext or TrustManager cannot be initialized
      */
     public static OkHttpClient getUnsafeOkHttpClient() {
+        if (unsafeClient == null) {
+            synchronized (UnsafeOkHttpClient.class) {
+                if (unsafeClient == null) {
+                    unsafeClient = createUnsafeOkHttpClient();
+                }
+            }
+        }
+        return unsafeClient;
+    }
+
+    private static OkHttpClient createUnsafeOkHttpClient() {
         try {
             TrustManager[] trustAllCerts = new TrustManager[]{
                     new X509TrustManager() {
@@ -30,7 +47,7 @@ public class UnsafeOkHttpClient {
             SSLContext sslContext = SSLContext.getInstance("SSL");
             sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
 
-            return new OkHttpClient.Builder()
+            return HttpClientProvider.getBaseClient().newBuilder()
                     .sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) trustAllCerts[0])
                     .hostnameVerifier((hostname, session) -> true)
                     .build();
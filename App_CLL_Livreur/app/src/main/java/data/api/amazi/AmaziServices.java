@@ -4,46 +4,55 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.app_cll_livreur.BuildConfig;
+
+import java.io.IOException;
+
+import data.api.HttpClientProvider;
+import data.model.BatchRequest;
+import data.model.BatchResponse;
 import data.model.ColisResponse;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * A service class for the Amazi API.
  * Provides utilities to fetch package data by ID.
+ * <p>
+ * A single instance is shared by the whole app (see {@link #getInstance()}); it runs on
+ * the authenticated client of {@link HttpClientProvider}, which reads the bearer token
+ * of the current session on every request.
+ * </p>
  */
 public class AmaziServices {
-    private static final String BASE_URL = "http://192.168.8.55:30080/";
+    private static final String BASE_URL = BuildConfig.AMAZI_BASE_URL;
+    private static volatile AmaziServices instance;
     private final IAmaziAPI apiService;
 
     /**
-     * Initializes the Amazi service with an authentication token.
+     * Initializes the Amazi service on the shared, authenticated HTTP client.
+     */
+    private AmaziServices() {
+        this.apiService = HttpClientProvider
+                .createRetrofit(BASE_URL, HttpClientProvider.getAuthenticatedClient())
+                .create(IAmaziAPI.class);
+    }
+
+    /**
+     * Returns the app-wide Amazi service.
      *
-     * @param bearerToken   The bearer token used for authentication.
+     * @return the shared {@link AmaziServices} instance
      */
-    public AmaziServices(String bearerToken) {
-        OkHttpClient client = new OkHttpClient.Builder()
-                .addInterceptor(chain -> {
-                    Request original = chain.request();
-                    Request requestWithAuth = original.newBuilder()
-                            .header("Authorization", "Bearer " + bearerToken)
-                            .build();
-                    return chain.proceed(requestWithAuth);
-                })
-                .build();
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .client(client)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-
-        this.apiService = retrofit.create(IAmaziAPI.class);
+    public static AmaziServices getInstance() {
+        if (instance == null) {
+            synchronized (AmaziServices.class) {
+                if (instance == null) {
+                    instance = new AmaziServices();
+                }
+            }
+        }
+        return instance;
     }
 
     /**
@@ -82,39 +91,22 @@ public class AmaziServices {
     }
 
     /**
-     * Updates the status of a delivery for a given package.
+     * Synchronously updates the status of a delivery for a given package.
+     * Must not be called from the main thread.
      *
-     * @param livraisonId   The ID of the delivery to update
-     * @param colisId       The ID of the package concerned
-     * @param livreurId     The ID of the courier (livreur) performing the update
-     * @param nouveauStatut The new status to set for the delivery
-     * @param callback      The callback interface for handling success or failure.
+     * @param livraisonId    The ID of the delivery to update
+     * @param colisId        The ID of the package concerned
+     * @param livreurId      The ID of the courier (livreur) performing the update
+     * @param nouveauStatut  The new status to set for the delivery
+     * @param idempotencyKey Unique key of the operation, reused when the request is retried
+     * @return the HTTP status code of the response
+     * @throws IOException if the request could not reach the server
      */
-    public void updateDeliveryStatus(int livraisonId, int colisId, String livreurId, int nouveauStatut, StatutCallback callback) {
-        Log.d("Amazi-Request", "Mise à jour statut : livraisonId=" + livraisonId + ", statut=" + nouveauStatut);
-        Call<Void> call = apiService.updateStatutLivraison(livraisonId, colisId, livreurId, nouveauStatut);
-        call.enqueue(new Callback<>() {
-            @Override
-            public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                if (response.isSuccessful()) {
-                    callback.onSuccess();
-                    Log.d("Amazi", "Mise à jour statut : livraisonId=" + livraisonId + ", statut=" + nouveauStatut);
-                } else {
-                    callback.onError("Erreur HTTP : " + response.code());
-                    Log.d("Amazi", "Mise à jour statut ratée : livraisonId=" + livraisonId + ", statut=" + nouveauStatut);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                callback.onError(t.getMessage());
-            }
-        });
-    }
-
-    public interface StatutCallback {
-        void onSuccess();
-        void onError(String message);
+    public int updateDeliveryStatusBlocking(int livraisonId, int colisId, String livreurId, int nouveauStatut, String idempotencyKey) throws IOException {
+        Log.d("Amazi-Request", "Mise à jour statut : livraisonId=" + livraisonId + ", statut=" + nouveauStatut + ", clé=" + idempotencyKey);
+        return apiService.updateStatutLivraison(livraisonId, colisId, livreurId, nouveauStatut, idempotencyKey)
+                .execute()
+                .code();
     }
 
     /**
@@ -148,38 +140,33 @@ public class AmaziServices {
     }
 
     /**
-     * Supprime un colis de la livraison.
+     * Supprime un colis de la livraison de manière synchrone.
+     * Ne doit pas être appelé depuis le thread principal.
      *
-     * @param livraisonId l’ID de la livraison
-     * @param colisId     l’ID du colis à supprimer
-     * @param callback    le callback à invoquer
+     * @param livraisonId    l’ID de la livraison
+     * @param colisId        l’ID du colis à supprimer
+     * @param idempotencyKey clé unique de l’opération, réutilisée en cas de nouvelle tentative
+     * @return le code HTTP de la réponse
+     * @throws IOException si la requête n’a pas pu atteindre le serveur
      */
-    public void deleteColis(int livraisonId, int colisId, DeleteCallback callback) {
-        Log.d("Amazi-Request", "Suppression colis : livraisonId=" + livraisonId + ", colisId=" + colisId);
-        Call<Void> call = apiService.deleteColis(livraisonId, colisId);
-        call.enqueue(new Callback<>() {
-            @Override
-            public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                if (response.isSuccessful()) {
-                    callback.onSuccess();
-                    Log.d("Amazi", "Colis supprimé avec succès");
-                } else {
-                    String err = "Erreur HTTP : " + response.code();
-                    callback.onError(err);
-                    Log.e("Amazi", err);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                callback.onError(t.getMessage());
-                Log.e("Amazi", "Suppression échouée : " + t.getMessage());
-            }
-        });
+    public int deleteColisBlocking(int livraisonId, int colisId, String idempotencyKey) throws IOException {
+        Log.d("Amazi-Request", "Suppression colis : livraisonId=" + livraisonId + ", colisId=" + colisId + ", clé=" + idempotencyKey);
+        return apiService.deleteColis(livraisonId, colisId, idempotencyKey)
+                .execute()
+                .code();
     }
 
-    public interface DeleteCallback {
-        void onSuccess();
-        void onError(String message);
+    /**
+     * Synchronously sends several status changes and package removals in one request.
+     * Must not be called from the main thread.
+     *
+     * @param request the ordered operations to apply
+     * @return the Retrofit {@link Response}; a 404, 405 or 501 code means the server
+     *         has no batch endpoint
+     * @throws IOException if the request could not reach the server
+     */
+    public Response<BatchResponse> sendBatchBlocking(BatchRequest request) throws IOException {
+        Log.d("Amazi-Request", "Envoi groupé : " + request.getOperations().size() + " opération(s)");
+        return apiService.sendBatch(request).execute();
     }
 }
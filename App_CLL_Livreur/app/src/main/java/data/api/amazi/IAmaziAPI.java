@@ -1,9 +1,14 @@
 package data.api.amazi;
 
+import data.model.BatchRequest;
+import data.model.BatchResponse;
 import data.model.ColisResponse;
 import retrofit2.Call;
+import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Query;
 
@@ -29,6 +34,7 @@ public interface IAmaziAPI {
      * @param colisId       The identifier of the package whose status is to be updated
      * @param livreurId     The identifier of the courier performing the update
      * @param newStatus     The new status to apply to the package
+     * @param idempotencyKey Unique key of the operation, so a replayed request is applied only once
      * @return A Call wrapping Void; successful HTTP response indicates the update was applied
      */
     @PUT("AMAZI/V1/Livraison/update-statut")
@@ -36,7 +42,8 @@ public interface IAmaziAPI {
             @Query("livraisonId") int livraisonId,
             @Query("colisId") int colisId,
             @Query("livreurId") String livreurId,
-            @Query("nouveauStatut") int newStatus // 0=Pending/1=Ongoing/2=Delivered/3=Absent
+            @Query("nouveauStatut") int newStatus, // 0=Pending/1=Ongoing/2=Delivered/3=Absent
+            @Header("Idempotency-Key") String idempotencyKey
     );
 
     /**
@@ -51,11 +58,24 @@ public interface IAmaziAPI {
      * Supprime un colis de la livraison.
      * @param livraisonId l’ID de la livraison
      * @param colisId     l’ID du colis à supprimer
+     * @param idempotencyKey clé unique de l’opération, pour qu’un rejeu ne soit appliqué qu’une fois
      * @return Call<Void> (200 = succès)
      */
     @DELETE("AMAZI/V1/Livraison/colis")
     Call<Void> deleteColis(
             @Query("livraisonId") int livraisonId,
-            @Query("colisId")     int colisId
+            @Query("colisId")     int colisId,
+            @Header("Idempotency-Key") String idempotencyKey
     );
-}
\ No newline at end of file
+
+    /**
+     * Applies several status changes and package removals in a single request.
+     * The server applies the operations in order and reports one result per operation.
+     * Servers without this endpoint answer 404, 405 or 501.
+     *
+     * @param request the ordered operations to apply
+     * @return A Call wrapping the per-operation {@link BatchResponse}
+     */
+    @POST("AMAZI/V1/Livraison/batch")
+    Call<BatchResponse> sendBatch(@Body BatchRequest request);
+}
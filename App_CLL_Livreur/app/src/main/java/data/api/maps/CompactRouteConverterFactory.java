@@ -0,0 +1,33 @@
+package data.api.maps;
+
+import com.google.gson.stream.JsonReader;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import data.model.CompactRoute;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Retrofit converter that reads {@link CompactRoute} bodies with the
+ * {@link DirectionsStreamParser} instead of reflective Gson.
+ * <p>
+ * Must be registered before the Gson converter, which would otherwise claim every type.
+ * </p>
+ */
+class CompactRouteConverterFactory extends Converter.Factory {
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type != CompactRoute.class) return null;
+        return (Converter<ResponseBody, CompactRoute>) body -> {
+            try (JsonReader reader = new JsonReader(body.charStream())) {
+                return DirectionsStreamParser.parse(reader);
+            } finally {
+                body.close();
+            }
+        };
+    }
+}
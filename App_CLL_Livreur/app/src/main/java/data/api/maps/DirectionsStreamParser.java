@@ -0,0 +1,231 @@
+package data.api.maps;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import data.model.CompactRoute;
+
+/**
+ * Token-level parser for Directions API responses.
+ * <p>
+ * Reads the JSON stream once and keeps only what {@link CompactRoute} needs: the
+ * distance and duration of each leg, the waypoint order and the step polylines, which
+ * are decoded on the fly into primitive arrays. Everything else (instructions, addresses,
+ * bounds, alternative routes...) is skipped without being materialized, so no
+ * intermediate object tree nor encoded polyline string survives the parse.
+ * </p>
+ * <p>
+ * Consecutive duplicate points (the end of a step is the start of the next one) are
+ * dropped; a leg therefore starts one point after the end of the previous leg.
+ * </p>
+ */
+public final class DirectionsStreamParser {
+
+    private static final int INITIAL_POINTS = 1024;
+    private static final int INITIAL_LEGS = 16;
+
+    private int[] legDistances = new int[INITIAL_LEGS];
+    private int[] legDurations = new int[INITIAL_LEGS];
+    private int[] legPointStart = new int[INITIAL_LEGS + 1];
+    private int legCount;
+    private int[] latE5 = new int[INITIAL_POINTS];
+    private int[] lngE5 = new int[INITIAL_POINTS];
+    private int pointCount;
+    private int[] waypointOrder = new int[0];
+    private String status;
+
+    private DirectionsStreamParser() { }
+
+    /**
+     * Parses a Directions response and returns its first route.
+     *
+     * @param reader a reader positioned at the start of the response
+     * @return the first route, or {@code null} if the response has no route
+     *         (e.g. {@code ZERO_RESULTS} or an error status)
+     * @throws IOException if the stream cannot be read or is not valid JSON
+     */
+    public static CompactRoute parse(JsonReader reader) throws IOException {
+        DirectionsStreamParser parser = new DirectionsStreamParser();
+        boolean hasRoute = parser.readResponse(reader);
+        if (!hasRoute) return null;
+        return parser.build();
+    }
+
+    private boolean readResponse(JsonReader reader) throws IOException {
+        boolean hasRoute = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("routes".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (hasRoute) {
+                        reader.skipValue();
+                    } else {
+                        readRoute(reader);
+                        hasRoute = true;
+                    }
+                }
+                reader.endArray();
+            } else if ("status".equals(name)) {
+                status = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hasRoute && (status == null || "OK".equals(status));
+    }
+
+    private void readRoute(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("legs".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readLeg(reader);
+                }
+                reader.endArray();
+            } else if ("waypoint_order".equals(name)) {
+                waypointOrder = readIntArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readLeg(JsonReader reader) throws IOException {
+        if (legCount == legDistances.length) {
+            legDistances = Arrays.copyOf(legDistances, legCount * 2);
+            legDurations = Arrays.copyOf(legDurations, legCount * 2);
+            legPointStart = Arrays.copyOf(legPointStart, legCount * 2 + 1);
+        }
+        int leg = legCount++;
+        legPointStart[leg] = pointCount;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("distance".equals(name)) {
+                legDistances[leg] = readValue(reader);
+            } else if ("duration".equals(name)) {
+                legDurations[leg] = readValue(reader);
+            } else if ("steps".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readStep(reader);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readStep(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("polyline".equals(reader.nextName())) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("points".equals(reader.nextName())) {
+                        decodePolyline(reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /** Reads the {@code value} field of a {@code {"text": ..., "value": ...}} object. */
+    private static int readValue(JsonReader reader) throws IOException {
+        int value = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("value".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                value = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    private static int[] readIntArray(JsonReader reader) throws IOException {
+        int[] values = new int[INITIAL_LEGS];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = reader.nextInt();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Decodes an encoded polyline straight into the point arrays.
+     *
+     * @see <a href="https://developers.google.com/maps/documentation/utilities/polylinealgorithm">Encoded Polyline Algorithm Format</a>
+     */
+    private void decodePolyline(String encoded) {
+        int length = encoded.length();
+        int index = 0;
+        int lat = 0;
+        int lng = 0;
+        while (index < length) {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20 && index < length);
+            lat += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 0;
+            shift = 0;
+            do {
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20 && index < length);
+            lng += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            addPoint(lat, lng);
+        }
+    }
+
+    private void addPoint(int lat, int lng) {
+        if (pointCount > 0 && latE5[pointCount - 1] == lat && lngE5[pointCount - 1] == lng) return;
+        if (pointCount == latE5.length) {
+            latE5 = Arrays.copyOf(latE5, pointCount * 2);
+            lngE5 = Arrays.copyOf(lngE5, pointCount * 2);
+        }
+        latE5[pointCount] = lat;
+        lngE5[pointCount] = lng;
+        pointCount++;
+    }
+
+    private CompactRoute build() {
+        legPointStart[legCount] = pointCount;
+        return new CompactRoute(
+                Arrays.copyOf(legDistances, legCount),
+                Arrays.copyOf(legDurations, legCount),
+                Arrays.copyOf(legPointStart, legCount + 1),
+                latE5, lngE5, pointCount, waypointOrder);
+    }
+}
@@ -7,52 +7,88 @@ import androidx.annotation.NonNull;
 import com.example.app_cll_livreur.BuildConfig;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import data.model.DirectionsResponse;
+import data.model.CompactRoute;
 import data.model.GeocodingResponse;
 import data.model.SimpleDirectionResponse;
+import data.api.HttpClientProvider;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 
 /**
  * A service class to interact with the Google Maps API using Retrofit.
  * Provides utilities to fetch directions, coordinates, and basic distance/duration info.
+ * <p>
+ * A single instance is shared by the whole app (see {@link #getInstance()}) and runs
+ * on the base client of {@link HttpClientProvider}, keeping the TLS connection to
+ * {@code maps.googleapis.com} warm between requests.
+ * </p>
  */
 public class GoogleMapsServices {
-    private static final String BASE_URL = "https://maps.googleapis.com/";
+    /** Base URL of the Google Maps web services. */
+    public static final String BASE_URL = "https://maps.googleapis.com/";
+    private static volatile GoogleMapsServices instance;
     private final IGoogleMapsAPI apiService;
     private final String apiKey;
+    private final RouteAssembler routeAssembler;
 
     /**
-     * Constructs a new GoogleMapsServices instance with the API key.
+     * Constructs the GoogleMapsServices instance with the API key.
      *
      * @param apiKey    Google Maps API key (in local.properties file).
      */
-    public GoogleMapsServices(String apiKey) {
-        this.apiKey =  BuildConfig.MAPS_API_KEY;
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
+    private GoogleMapsServices(String apiKey) {
+        this.apiKey = apiKey;
+        this.apiService = HttpClientProvider
+                .createRetrofit(BASE_URL, HttpClientProvider.getBaseClient(), new CompactRouteConverterFactory())
+                .create(IGoogleMapsAPI.class);
+        this.routeAssembler = new RouteAssembler(apiService, apiKey);
+    }
 
-        this.apiService = retrofit.create(IGoogleMapsAPI.class);
+    /**
+     * Returns the app-wide Google Maps service, configured with
+     * {@link BuildConfig#MAPS_API_KEY}.
+     *
+     * @return the shared {@link GoogleMapsServices} instance
+     */
+    public static GoogleMapsServices getInstance() {
+        if (instance == null) {
+            synchronized (GoogleMapsServices.class) {
+                if (instance == null) {
+                    instance = new GoogleMapsServices(BuildConfig.MAPS_API_KEY);
+                }
+            }
+        }
+        return instance;
     }
 
     /**
-     * Fetches optimized directions from the user's current location through a list of waypoints.
+     * Fetches directions from the user's current location through a list of waypoints,
+     * visited in the given order.
+     * <p>
+     * The order is computed on the device (see {@link route.RouteOptimizer}) so the
+     * request does not use {@code optimize:true}. The returned route's waypoint
+     * order is set to {@code waypointOrder}, i.e. it still indexes the original
+     * {@code waypoints} list. The response is streamed into a {@link CompactRoute}.
+     * </p>
+     * <p>
+     * Waypoints are sent in the compact {@code enc:} polyline form. Tours with more stops
+     * than a single request accepts are fetched in segments by a {@link RouteAssembler}
+     * and stitched back into one route; in that case the callback runs on a pool thread.
+     * </p>
      *
      * @param userLocation          The origin and destination location.
      * @param destinationLocation   The destination location.
      * @param waypoints             The list of intermediate waypoints.
+     * @param waypointOrder         Visiting order, as indices into {@code waypoints}.
      * @param callback              Callback to handle the result or error.
      */
-    public void fetchDirections(LatLng userLocation, LatLng destinationLocation, List<LatLng> waypoints, DirectionsCallback callback) {
+    public void fetchDirections(LatLng userLocation, LatLng destinationLocation, List<LatLng> waypoints,
+                                List<Integer> waypointOrder, DirectionsCallback callback) {
         if (userLocation == null) {
             Log.e("Maps", "Position utilisateur non disponible");
             callback.onError("Position utilisateur indisponible.");
@@ -61,16 +97,24 @@ public class GoogleMapsServices {
 
         String origin = userLocation.latitude + "," + userLocation.longitude;
         String destination = destinationLocation.latitude + "," + destinationLocation.longitude;
-        String waypointsStr = "optimize:true|" + formatWaypoints(waypoints);
+        List<LatLng> orderedWaypoints = new ArrayList<>(waypointOrder.size());
+        for (int index : waypointOrder) {
+            orderedWaypoints.add(waypoints.get(index));
+        }
+
+        if (RouteAssembler.needsSegments(orderedWaypoints.size())) {
+            routeAssembler.assemble(userLocation, destinationLocation, orderedWaypoints, waypointOrder, callback);
+            return;
+        }
 
-        Call<DirectionsResponse> call = apiService.getDirections(origin, destination, waypointsStr, "driving", apiKey);
+        String waypointsStr = RouteAssembler.encodeWaypoints(orderedWaypoints);
+
+        Call<CompactRoute> call = apiService.getDirections(origin, destination, waypointsStr, "driving", apiKey);
         call.enqueue(new Callback<>() {
             @Override
-            public void onResponse(@NonNull Call<DirectionsResponse> call, @NonNull Response<DirectionsResponse> response) {
-                if (response.body() != null && !response.body().getRoutes().isEmpty()) {
-                    DirectionsResponse.Route route = response.body().getRoutes().get(0);
-                    //DirectionsResponse.Leg leg = route.getLegs().get(0);
-                    callback.onDirectionsFetched(response.body());
+            public void onResponse(@NonNull Call<CompactRoute> call, @NonNull Response<CompactRoute> response) {
+                if (response.body() != null) {
+                    callback.onDirectionsFetched(response.body().withWaypointOrder(toArray(waypointOrder)));
                 } else {
                     Log.e("Maps", "Réponse API Directions vide ou incorrecte !");
                     callback.onError("Réponse API Directions vide ou incorrecte !");
@@ -78,17 +122,26 @@ public class GoogleMapsServices {
             }
 
             @Override
-            public void onFailure(@NonNull Call<DirectionsResponse> call, @NonNull Throwable t) {
+            public void onFailure(@NonNull Call<CompactRoute> call, @NonNull Throwable t) {
                 Log.e("Maps", "Erreur API Directions : " + t.getMessage());
+                callback.onError("Erreur API Directions : " + t.getMessage());
             }
         });
     }
 
     public interface DirectionsCallback {
-        void onDirectionsFetched(DirectionsResponse response);
+        void onDirectionsFetched(CompactRoute route);
         void onError(String message);
     }
 
+    static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
     /**
      * Fetches coordinates for a given address using Google Geocoding API.
      *
@@ -145,7 +198,6 @@ public class GoogleMapsServices {
 
         String origin = userLocation.latitude + "," + userLocation.longitude;
         String destination = destinationLocation.latitude + "," + destinationLocation.longitude;
-        String apiKey = BuildConfig.MAPS_API_KEY;
 
         Call<SimpleDirectionResponse> call = apiService.getSimpleDirection(origin, destination, "driving", apiKey);
 
@@ -172,21 +224,4 @@ public class GoogleMapsServices {
         void onDirectionFetched(int distanceInMeters, int durationInSeconds);
         void onError(String message);
     }
-
-    /**
-     * Formats a list of LatLng into a URL-encoded string for waypoints.
-     *
-     * @param waypoints List of coordinates to format.
-     * @return A string formatted as "lat,lng|lat,lng|..."
-     */
-    private String formatWaypoints(List<LatLng> waypoints) {
-        StringBuilder waypointsStr = new StringBuilder();
-        for (LatLng point : waypoints) {
-            waypointsStr.append(point.latitude).append(",").append(point.longitude).append("|");
-        }
-        if (waypointsStr.length() > 0) {
-            waypointsStr.setLength(waypointsStr.length() - 1);
-        }
-        return waypointsStr.toString();
-    }
-}
\ No newline at end of file
+}
@@ -1,6 +1,6 @@
 package data.api.maps;
 
-import data.model.DirectionsResponse;
+import data.model.CompactRoute;
 import data.model.GeocodingResponse;
 import data.model.SimpleDirectionResponse;
 import retrofit2.Call;
@@ -21,10 +21,11 @@ public interface IGoogleMapsAPI {
      * @param waypoints   Optional intermediate waypoints, separated by '|'. Can be null.
      * @param mode        Mode of transportation (e.g., "driving", "walking", "bicycling").
      * @param apiKey      Google Maps API key.
-     * @return A Retrofit Call object returning a {@link DirectionsResponse} containing detailed route information.
+     * @return A Retrofit Call object returning a {@link CompactRoute} (parsed by
+     *         {@link DirectionsStreamParser}), or a null body if no route was found.
      */
     @GET("maps/api/directions/json")
-    Call<DirectionsResponse> getDirections(
+    Call<CompactRoute> getDirections(
             @Query("origin") String origin,
             @Query("destination") String destination,
             @Query("waypoints") String waypoints,
@@ -0,0 +1,140 @@
+package data.api.maps;
+
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.PolyUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import data.model.CompactRoute;
+import retrofit2.Response;
+
+/**
+ * Fetches routes with more stops than the Directions API accepts in one request.
+ * <p>
+ * The ordered stop list (origin, stops, destination) is split into segments of at most
+ * {@link #MAX_WAYPOINTS_PER_SEGMENT} intermediate waypoints; consecutive segments share
+ * their boundary stop, so the destination of one segment is the origin of the next.
+ * Segments are fetched concurrently on a pool of {@link #MAX_PARALLEL_REQUESTS} threads,
+ * with the waypoints encoded as a polyline ({@code enc:...:}) to keep the URL short, and
+ * their legs are stitched back into a single {@link CompactRoute}.
+ * </p>
+ */
+class RouteAssembler {
+
+    /** Intermediate waypoints per request (the API accepts 25, minus a safety margin). */
+    static final int MAX_WAYPOINTS_PER_SEGMENT = 23;
+
+    /** Number of segment requests in flight at the same time. */
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private final IGoogleMapsAPI apiService;
+    private final String apiKey;
+    private final ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS, r -> {
+        Thread thread = new Thread(r, "route-segment");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    RouteAssembler(IGoogleMapsAPI apiService, String apiKey) {
+        this.apiService = apiService;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Returns whether a route through {@code stopCount} stops needs several requests.
+     *
+     * @param stopCount the number of intermediate stops
+     * @return {@code true} if the route must be split into segments
+     */
+    static boolean needsSegments(int stopCount) {
+        return stopCount > MAX_WAYPOINTS_PER_SEGMENT;
+    }
+
+    /**
+     * Encodes waypoints in the compact {@code enc:<polyline>:} form of the Directions API.
+     *
+     * @param waypoints the waypoints, in visiting order
+     * @return the encoded waypoints parameter, or {@code null} if there are none
+     */
+    static String encodeWaypoints(List<LatLng> waypoints) {
+        if (waypoints.isEmpty()) return null;
+        return "enc:" + PolyUtil.encode(waypoints) + ":";
+    }
+
+    /**
+     * Fetches the route through all the stops, segment by segment, and reports the
+     * stitched result (or the first error) once, on a pool thread.
+     *
+     * @param origin        the start of the tour
+     * @param destination   the end of the tour
+     * @param orderedStops  the stops in visiting order
+     * @param waypointOrder the waypoint order to set on the stitched route
+     * @param callback      receives the stitched route or an error
+     */
+    void assemble(LatLng origin, LatLng destination, List<LatLng> orderedStops, List<Integer> waypointOrder,
+                  GoogleMapsServices.DirectionsCallback callback) {
+        List<LatLng> nodes = new ArrayList<>(orderedStops.size() + 2);
+        nodes.add(origin);
+        nodes.addAll(orderedStops);
+        nodes.add(destination);
+
+        List<int[]> segments = new ArrayList<>();
+        int start = 0;
+        int last = nodes.size() - 1;
+        while (start < last) {
+            int end = Math.min(start + MAX_WAYPOINTS_PER_SEGMENT + 1, last);
+            segments.add(new int[]{start, end});
+            start = end;
+        }
+
+        Log.d("Maps", "Itinéraire de " + orderedStops.size() + " arrêts découpé en " + segments.size() + " segments");
+
+        CompactRoute[] results = new CompactRoute[segments.size()];
+        AtomicInteger remaining = new AtomicInteger(segments.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = i;
+            int[] bounds = segments.get(i);
+            executor.execute(() -> {
+                if (failed.get()) return;
+                try {
+                    results[segmentIndex] = fetchSegment(nodes.subList(bounds[0], bounds[1] + 1));
+                } catch (IOException e) {
+                    if (failed.compareAndSet(false, true)) {
+                        Log.e("Maps", "Erreur API Directions (segment " + segmentIndex + ") : " + e.getMessage());
+                        callback.onError("Erreur API Directions : " + e.getMessage());
+                    }
+                    return;
+                }
+                if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                    callback.onDirectionsFetched(CompactRoute.concat(results, GoogleMapsServices.toArray(waypointOrder)));
+                }
+            });
+        }
+    }
+
+    private CompactRoute fetchSegment(List<LatLng> segmentNodes) throws IOException {
+        LatLng from = segmentNodes.get(0);
+        LatLng to = segmentNodes.get(segmentNodes.size() - 1);
+        String waypoints = encodeWaypoints(segmentNodes.subList(1, segmentNodes.size() - 1));
+
+        Response<CompactRoute> response = apiService.getDirections(
+                from.latitude + "," + from.longitude,
+                to.latitude + "," + to.longitude,
+                waypoints, "driving", apiKey).execute();
+
+        if (response.body() == null) {
+            throw new IOException("Réponse vide pour un segment (HTTP " + response.code() + ")");
+        }
+        return response.body();
+    }
+}
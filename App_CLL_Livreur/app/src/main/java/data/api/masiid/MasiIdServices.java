@@ -4,14 +4,13 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import data.api.HttpClientProvider;
 import data.api.UnsafeOkHttpClient;
 import data.model.LoginRequest;
 import data.model.LoginResponse;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Service class for communicating with the Masi-ID authentication API.
@@ -26,13 +25,9 @@ public class MasiIdServices {
      * to allow communication over HTTPS with self-signed certificates.
      */
     public MasiIdServices() {
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .client(UnsafeOkHttpClient.getUnsafeOkHttpClient())
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-
-        this.api = retrofit.create(IMasiIdAPI.class);
+        this.api = HttpClientProvider
+                .createRetrofit(BASE_URL, UnsafeOkHttpClient.getUnsafeOkHttpClient())
+                .create(IMasiIdAPI.class);
     }
 
     /**
@@ -0,0 +1,248 @@
+package data.cache;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.text.Normalizer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of geocoded addresses, used before any call to the Geocoding API.
+ * <p>
+ * The first tier is an in-memory LRU, the second a {@link SharedPreferences} file
+ * that survives restarts; disk entries expire after {@link #TTL_MS}. Once per process,
+ * the file is pruned in the background: expired entries are removed, then the oldest
+ * ones beyond {@link #DISK_CAPACITY}, and the most recent ones are loaded into memory.
+ * {@link #get} never waits for the file: until it is loaded, only the memory tier is
+ * searched, and afterwards a disk lookup reads the copy kept in memory by
+ * {@link SharedPreferences}, so it does no I/O on the calling thread. Entries are
+ * keyed by a normalized form of the address (see {@link #normalizeKey}), so small
+ * differences in case, accents or punctuation between two parcels going to the
+ * same building still hit the cache. Hit and miss counters are kept to measure
+ * the savings.
+ * </p>
+ */
+public class GeocodeCache {
+
+    private static final String TAG = "GeocodeCache";
+    private static final String PREFS_NAME = "geocode_cache";
+
+    /** Number of addresses kept in memory. */
+    private static final int MEMORY_CAPACITY = 512;
+
+    /** Lifetime of an entry stored on disk. */
+    private static final long TTL_MS = TimeUnit.DAYS.toMillis(30);
+
+    /** Number of addresses kept on disk after pruning. */
+    private static final int DISK_CAPACITY = 5_000;
+
+    private static volatile GeocodeCache instance;
+
+    private final LruCache<String, double[]> memory = new LruCache<>(MEMORY_CAPACITY);
+    private final SharedPreferences disk;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Set once the file is loaded, so that reading it no longer blocks. */
+    private volatile boolean diskLoaded;
+
+    private GeocodeCache(Context appContext) {
+        // Starts loading the file in the background right away
+        this.disk = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Thread pruning = new Thread(this::pruneDisk, "geocode-cache-prune");
+        pruning.setDaemon(true);
+        pruning.start();
+    }
+
+    /**
+     * Returns the app-wide geocoding cache.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link GeocodeCache}
+     */
+    public static GeocodeCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (GeocodeCache.class) {
+                if (instance == null) {
+                    instance = new GeocodeCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Builds the cache key of an address from its components. The key is
+     * lower-cased, stripped of accents and punctuation, and whitespace is collapsed.
+     *
+     * @param rue        the street address
+     * @param codePostal the postal code
+     * @param ville      the city
+     * @param pays       the country
+     * @return the normalized key
+     */
+    public static String normalizeKey(String rue, String codePostal, String ville, String pays) {
+        return normalizePart(rue) + "|" + normalizePart(codePostal) + "|"
+                + normalizePart(ville) + "|" + normalizePart(pays);
+    }
+
+    private static String normalizePart(String part) {
+        if (part == null) return "";
+        String decomposed = Normalizer.normalize(part, Normalizer.Form.NFD);
+        return decomposed
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", " ")
+                .trim();
+    }
+
+    /**
+     * Looks up the coordinates of an address, first in memory then on disk. Before the
+     * file is loaded, a key not in memory is reported as a miss rather than waited for.
+     *
+     * @param key the normalized key of the address
+     * @return {@code {lat, lng}}, or {@code null} on a miss
+     */
+    public double[] get(String key) {
+        double[] cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached;
+        }
+
+        String stored = diskLoaded ? disk.getString(key, null) : null;
+        if (stored != null) {
+            double[] entry = decode(stored);
+            if (entry != null && System.currentTimeMillis() - (long) entry[2] < TTL_MS) {
+                double[] latLng = {entry[0], entry[1]};
+                memory.put(key, latLng);
+                diskHits.incrementAndGet();
+                return latLng;
+            }
+            disk.edit().remove(key).apply();
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the coordinates of an address in both tiers.
+     *
+     * @param key the normalized key of the address
+     * @param lat the latitude
+     * @param lng the longitude
+     */
+    public void put(String key, double lat, double lng) {
+        memory.put(key, new double[]{lat, lng});
+        disk.edit().putString(key, lat + ";" + lng + ";" + System.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Removes the expired and unreadable entries from disk, then the oldest ones beyond
+     * {@link #DISK_CAPACITY}, and puts the {@link #MEMORY_CAPACITY} most recent ones in
+     * memory. Blocks until the file is loaded; runs on its own thread.
+     */
+    private void pruneDisk() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, double[]>> live = new ArrayList<>();
+        SharedPreferences.Editor editor = disk.edit();
+        int removed = 0;
+        for (Map.Entry<String, ?> stored : disk.getAll().entrySet()) {
+            double[] entry = stored.getValue() instanceof String ? decode((String) stored.getValue()) : null;
+            if (entry == null || now - (long) entry[2] >= TTL_MS) {
+                editor.remove(stored.getKey());
+                removed++;
+            } else {
+                live.add(new AbstractMap.SimpleImmutableEntry<>(stored.getKey(), entry));
+            }
+        }
+
+        live.sort(Comparator.comparingDouble(stored -> stored.getValue()[2]));
+        for (int i = 0; i < live.size() - DISK_CAPACITY; i++) {
+            editor.remove(live.get(i).getKey());
+            removed++;
+        }
+        if (removed > 0) {
+            editor.apply();
+            Log.d(TAG, removed + " adresse(s) retirée(s) du cache disque");
+        }
+
+        // Oldest first, so that the most recent entries are the last evicted
+        int loaded = 0;
+        for (int i = Math.max(0, live.size() - MEMORY_CAPACITY); i < live.size(); i++) {
+            String key = live.get(i).getKey();
+            double[] entry = live.get(i).getValue();
+            // LruCache locks on itself: an entry put since the file was read is newer, keep it
+            synchronized (memory) {
+                if (memory.get(key) == null) {
+                    memory.put(key, new double[]{entry[0], entry[1]});
+                    loaded++;
+                }
+            }
+        }
+        diskLoaded = true;
+        Log.d(TAG, loaded + " adresse(s) chargée(s) en mémoire");
+    }
+
+    private static double[] decode(String stored) {
+        String[] parts = stored.split(";");
+        if (parts.length != 3) return null;
+        try {
+            return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2])};
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Entrée de cache illisible : " + stored);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of lookups served from memory.
+     *
+     * @return the memory hit count
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of lookups served from disk.
+     *
+     * @return the disk hit count
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups that required a Geocoding API call.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns a one-line summary of the hit and miss counters, for logging.
+     *
+     * @return the counters as text
+     */
+    public String getStats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        int ratio = total == 0 ? 0 : (int) (100 * hits / total);
+        return "mémoire=" + memoryHits.get() + ", disque=" + diskHits.get()
+                + ", appels API=" + misses.get() + " (" + ratio + "% évités)";
+    }
+}
@@ -5,9 +5,9 @@ import android.util.Log;
 
 import data.api.amazi.AmaziServices;
 import data.api.maps.GoogleMapsServices;
+import data.cache.GeocodeCache;
 import data.model.Colis;
 import data.model.ColisResponse;
-import utils.TokenHolder;
 
 
 /**
@@ -19,6 +19,7 @@ public class ColisController {
     private final Context context;
     private final AmaziServices livraisonServices;
     private final GoogleMapsServices googleMapsServices;
+    private final GeocodeCache geocodeCache;
 
     public interface ColisCallback {
         void onColisReady(Colis colis);
@@ -29,13 +30,13 @@ public class ColisController {
     /**
      * Constructs a new ColisController.
      *
-     * @param context           the Android context used for service initialization
-     * @param googleMapsApiKey  the API key for Google Maps geocoding requests
+     * @param context the Android context used for service initialization
      */
-    public ColisController(Context context, String googleMapsApiKey) {
+    public ColisController(Context context) {
         this.context = context;
-        this.livraisonServices = new AmaziServices(TokenHolder.getToken());
-        this.googleMapsServices = new GoogleMapsServices(googleMapsApiKey);
+        this.livraisonServices = AmaziServices.getInstance();
+        this.googleMapsServices = GoogleMapsServices.getInstance();
+        this.geocodeCache = GeocodeCache.getInstance(context);
     }
 
     /**
@@ -43,7 +44,8 @@ public class ColisController {
      * <ol>
      *     <li>Fetching package details from the Amazi API</li>
      *     <li>Building the full address string</li>
-     *     <li>Geocoding the address via the Google Maps API</li>
+     *     <li>Looking up its coordinates in the {@link GeocodeCache}, or geocoding the
+     *         address via the Google Maps API on a miss</li>
      *     <li>Constructing a {@link Colis} object with the retrieved data</li>
      *     <li>Returning the result through the provided callback</li>
      * </ol>
@@ -63,22 +65,21 @@ public class ColisController {
                         response.getCodePostal() + " " + response.getVille() + ", " +
                         response.getPays();
 
+                String cacheKey = GeocodeCache.normalizeKey(response.getAdresseRue(),
+                        response.getCodePostal(), response.getVille(), response.getPays());
+                double[] cached = geocodeCache.get(cacheKey);
+                if (cached != null) {
+                    Log.d("ColisController", "📍 Coordonnées en cache : " + geocodeCache.getStats());
+                    callback.onColisReady(buildColis(response, adresseComplete, colisId, cached[0], cached[1]));
+                    return;
+                }
+
                 googleMapsServices.fetchCoordinates(adresseComplete, new GoogleMapsServices.CoordinateCallback() {
                     @Override
                     public void onCoordinatesReceived(double lat, double lng) {
                         Log.d("ColisController", "📍 Coordonnées : " + lat + ", " + lng);
-
-                        Colis colis = new Colis(
-                                response.getNomLivreur(),
-                                adresseComplete,
-                                colisId,
-                                lat,
-                                lng
-                        );
-
-                        Log.d("ColisController", "Colis prêt à être retourné au fragment : " + colis.getName());
-
-                        callback.onColisReady(colis);
+                        geocodeCache.put(cacheKey, lat, lng);
+                        callback.onColisReady(buildColis(response, adresseComplete, colisId, lat, lng));
                     }
 
                     @Override
@@ -96,4 +97,27 @@ public class ColisController {
             }
         });
     }
+
+    /**
+     * Constructs the {@link Colis} returned to the caller.
+     *
+     * @param response        the package details from the Amazi API
+     * @param adresseComplete the full delivery address
+     * @param colisId         the identifier of the package
+     * @param lat             the latitude of the delivery address
+     * @param lng             the longitude of the delivery address
+     * @return the new {@link Colis}
+     */
+    private Colis buildColis(ColisResponse response, String adresseComplete, int colisId, double lat, double lng) {
+        Colis colis = new Colis(
+                response.getNomLivreur(),
+                adresseComplete,
+                colisId,
+                lat,
+                lng
+        );
+
+        Log.d("ColisController", "Colis prêt à être retourné au fragment : " + colis.getName());
+        return colis;
+    }
 }
@@ -0,0 +1,228 @@
+package data.controller;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import data.model.Colis;
+import data.outbox.DeliveryOutbox;
+import data.outbox.OutboxEntry;
+import data.tour.TourRepository;
+import data.tour.TourSession;
+import ui.CourierIdHolder;
+import ui.DeliveryIdHolder;
+
+/**
+ * Pipeline that turns scanned package numbers into packages of the tour, for loading
+ * the van with a continuous scan.
+ * <p>
+ * Each number goes through the {@link ColisController} (details from the Amazi API, then
+ * geocoding) and is added to the tour of the {@link TourSession} with status 1; the
+ * status is also recorded in the {@link DeliveryOutbox} for the Amazi API. At most
+ * {@link #MAX_CONCURRENT} packages are processed at once; the others wait in arrival
+ * order. A number already in the tour or already in the pipeline is ignored.
+ * </p>
+ * <p>
+ * {@link #getProgress()} publishes the counters and the last {@link #MAX_FAILURES}
+ * failures of the current scan session. The pipeline is driven from the main thread,
+ * where the API callbacks are also delivered, so its state needs no locking.
+ * </p>
+ */
+public class ColisIntake {
+
+    private static final String TAG = "ColisIntake";
+
+    /** Number of packages fetched and geocoded at the same time. */
+    public static final int MAX_CONCURRENT = 4;
+
+    /** Number of failures kept for a scan session; older ones are dropped. */
+    public static final int MAX_FAILURES = 20;
+
+    private static volatile ColisIntake instance;
+
+    private final ColisController controller;
+    private final TourRepository repository;
+    private final DeliveryOutbox outbox;
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private final ArrayDeque<Failure> failures = new ArrayDeque<>();
+    private final MutableLiveData<Progress> progress = new MutableLiveData<>(Progress.EMPTY);
+    private int inFlight;
+    private int added;
+    private int failed;
+
+    /** A scanned value that could not be added to the tour. */
+    public static final class Failure {
+        private final String value;
+        private final String message;
+
+        Failure(String value, String message) {
+            this.value = value;
+            this.message = message;
+        }
+
+        /** @return the scanned value */
+        public String getValue() {
+            return value;
+        }
+
+        /** @return the reason of the failure */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /** Counters of a scan session. */
+    public static final class Progress {
+        static final Progress EMPTY = new Progress(0, 0, 0, Collections.emptyList());
+
+        private final int added;
+        private final int pending;
+        private final int failed;
+        private final List<Failure> failures;
+
+        Progress(int added, int pending, int failed, List<Failure> failures) {
+            this.added = added;
+            this.pending = pending;
+            this.failed = failed;
+            this.failures = failures;
+        }
+
+        /** @return the number of packages added to the tour */
+        public int getAdded() {
+            return added;
+        }
+
+        /** @return the number of packages waiting or being processed */
+        public int getPending() {
+            return pending;
+        }
+
+        /** @return the number of values that could not be added, including dropped failures */
+        public int getFailed() {
+            return failed;
+        }
+
+        /** @return the last {@link #MAX_FAILURES} failures, oldest first (unmodifiable) */
+        public List<Failure> getFailures() {
+            return failures;
+        }
+    }
+
+    private ColisIntake(Context appContext) {
+        controller = new ColisController(appContext);
+        repository = TourSession.getInstance(appContext).getRepository();
+        outbox = DeliveryOutbox.getInstance(appContext);
+    }
+
+    /**
+     * Returns the app-wide intake pipeline.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link ColisIntake}
+     */
+    public static ColisIntake getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ColisIntake.class) {
+                if (instance == null) {
+                    instance = new ColisIntake(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** @return LiveData of the counters of the current scan session */
+    public LiveData<Progress> getProgress() {
+        return progress;
+    }
+
+    /**
+     * Starts a new scan session: resets the counters and the failures. Packages still in
+     * the pipeline keep going.
+     */
+    public void startSession() {
+        added = 0;
+        failed = 0;
+        failures.clear();
+        publish();
+    }
+
+    /**
+     * Queues a scanned value.
+     *
+     * @param value the content of the QR code
+     * @return {@code true} if the value was queued, {@code false} if it is invalid or its
+     *         package is already in the tour or in the pipeline
+     */
+    public boolean submit(String value) {
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            addFailure(new Failure(value, "QR code invalide"));
+            publish();
+            return false;
+        }
+        if (repository.getSnapshot().contains(number) || !pending.add(number)) return false;
+
+        queue.add(number);
+        drain();
+        publish();
+        return true;
+    }
+
+    private void drain() {
+        while (inFlight < MAX_CONCURRENT && !queue.isEmpty()) {
+            int number = queue.poll();
+            inFlight++;
+            controller.traiterColisDepuisQRCode(number, new ColisController.ColisCallback() {
+                @Override
+                public void onColisReady(Colis colis) {
+                    if (repository.add(colis.withStatus(1))) {
+                        added++;
+                        outbox.enqueue(OutboxEntry.statusUpdate(DeliveryIdHolder.getDeliveryId(), number,
+                                CourierIdHolder.getCourierId(), 1));
+                    }
+                    onFinished(number);
+                }
+
+                @Override
+                public void onError(String message) {
+                    Log.d(TAG, "Colis " + number + " non ajouté : " + message);
+                    addFailure(new Failure(String.valueOf(number), message));
+                    onFinished(number);
+                }
+            });
+        }
+    }
+
+    private void onFinished(int number) {
+        inFlight--;
+        pending.remove(number);
+        drain();
+        publish();
+    }
+
+    private void addFailure(Failure failure) {
+        failed++;
+        if (failures.size() == MAX_FAILURES) {
+            failures.poll();
+        }
+        failures.add(failure);
+    }
+
+    private void publish() {
+        progress.setValue(new Progress(added, pending.size(), failed,
+                Collections.unmodifiableList(new ArrayList<>(failures))));
+    }
+}
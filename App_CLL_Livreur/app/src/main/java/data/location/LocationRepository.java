@@ -0,0 +1,242 @@
+package data.location;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.maps.model.LatLng;
+
+import route.GeoMath;
+
+/**
+ * App-scoped source of the courier's position.
+ * <p>
+ * Holds a single {@code requestLocationUpdates} subscription on the fused provider and
+ * exposes the latest fix through {@link #getLocation()}. The subscription runs while at
+ * least one observer is active, and is only stopped {@link #STOP_DELAY_MS} after the last
+ * one goes away, so swapping fragments does not restart the GPS warm-up.
+ * </p>
+ * <p>
+ * The update interval adapts to the situation: {@link #FAST_INTERVAL_MS} at high accuracy
+ * while the courier is moving or within {@link #NEAR_STOP_RADIUS_M} of the next stop
+ * (see {@link #setNextStop}), {@link #SLOW_INTERVAL_MS} at balanced accuracy when parked.
+ * </p>
+ * <p>
+ * Each criterion has separate enter and exit thresholds, and fast updates are only
+ * given up once the courier has been parked for {@link #SLOW_DWELL_MS}, so that a red
+ * light or a GPS jitter around a threshold does not renew the subscription on each fix.
+ * </p>
+ */
+public class LocationRepository {
+
+    private static final String TAG = "LocationRepository";
+
+    /** Interval while driving or approaching a stop. */
+    private static final long FAST_INTERVAL_MS = 2_000;
+
+    /** Interval while parked. */
+    private static final long SLOW_INTERVAL_MS = 15_000;
+
+    /** Speed above which the courier starts to be considered moving, in m/s. */
+    private static final float MOVING_SPEED_MPS = 1.5f;
+
+    /** Speed under which a moving courier is considered stopped, in m/s. */
+    private static final float STOPPED_SPEED_MPS = 0.5f;
+
+    /** Distance to the next stop under which fast updates start, in meters. */
+    private static final double NEAR_STOP_RADIUS_M = 300;
+
+    /** Distance to the next stop beyond which the courier is no longer near it, in meters. */
+    private static final double LEAVE_STOP_RADIUS_M = 400;
+
+    /** How long the courier must stay parked before fast updates are given up. */
+    private static final long SLOW_DWELL_MS = 30_000;
+
+    /** Delay before stopping updates once nothing observes the position. */
+    private static final long STOP_DELAY_MS = 30_000;
+
+    private static volatile LocationRepository instance;
+
+    private final Context appContext;
+    private final FusedLocationProviderClient client;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LocationLiveData location = new LocationLiveData();
+    private final Runnable stopUpdates = this::stopUpdates;
+    private LatLng nextStop;
+    private boolean running;
+    private boolean fastMode;
+    /** Time since when fast updates are no longer needed, or -1; in elapsed realtime nanos. */
+    private long slowSinceNanos = -1;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            Location fix = result.getLastLocation();
+            if (fix != null) {
+                location.setValue(fix);
+                adaptInterval(fix);
+            }
+        }
+    };
+
+    /** Starts and stops the subscription with its observers. */
+    private final class LocationLiveData extends MutableLiveData<Location> {
+        @Override
+        protected void onActive() {
+            mainHandler.removeCallbacks(stopUpdates);
+            startUpdates();
+        }
+
+        @Override
+        protected void onInactive() {
+            mainHandler.postDelayed(stopUpdates, STOP_DELAY_MS);
+        }
+    }
+
+    private LocationRepository(Context appContext) {
+        this.appContext = appContext;
+        this.client = LocationServices.getFusedLocationProviderClient(appContext);
+    }
+
+    /**
+     * Returns the app-wide location repository.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link LocationRepository}
+     */
+    public static LocationRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LocationRepository.class) {
+                if (instance == null) {
+                    instance = new LocationRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the latest position of the courier. Observing it keeps location updates
+     * running; the last known location is delivered first, if any.
+     *
+     * @return LiveData of the latest {@link Location}
+     */
+    public LiveData<Location> getLocation() {
+        return location;
+    }
+
+    /**
+     * Converts a fix to map coordinates.
+     *
+     * @param fix a location fix
+     * @return its {@link LatLng}
+     */
+    public static LatLng toLatLng(Location fix) {
+        return new LatLng(fix.getLatitude(), fix.getLongitude());
+    }
+
+    /**
+     * Sets the stop the courier is heading to, used to keep fast updates near it.
+     * Must be called from the main thread.
+     *
+     * @param stop the next stop, or {@code null} at the end of the tour
+     */
+    public void setNextStop(LatLng stop) {
+        this.nextStop = stop;
+        Location last = location.getValue();
+        if (last != null) {
+            adaptInterval(last);
+        }
+    }
+
+    /**
+     * (Re)starts location updates, e.g. once the location permission has been granted.
+     * Does nothing while nothing observes the position.
+     * Must be called from the main thread.
+     */
+    public void refresh() {
+        if (location.hasActiveObservers()) {
+            startUpdates();
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void startUpdates() {
+        if (running) return;
+        if (ContextCompat.checkSelfPermission(appContext, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Permission de localisation manquante");
+            return;
+        }
+
+        running = true;
+        client.getLastLocation().addOnSuccessListener(fix -> {
+            if (fix != null && location.getValue() == null) {
+                location.setValue(fix);
+            }
+        });
+        requestUpdates(true);
+    }
+
+    private void stopUpdates() {
+        if (!running) return;
+        client.removeLocationUpdates(callback);
+        running = false;
+        Log.d(TAG, "Mises à jour de position arrêtées");
+    }
+
+    private void adaptInterval(Location fix) {
+        if (!running) return;
+
+        // In fast mode, the exit thresholds apply
+        float speedThreshold = fastMode ? STOPPED_SPEED_MPS : MOVING_SPEED_MPS;
+        double radius = fastMode ? LEAVE_STOP_RADIUS_M : NEAR_STOP_RADIUS_M;
+        boolean moving = fix.hasSpeed() && fix.getSpeed() > speedThreshold;
+        boolean nearStop = nextStop != null && GeoMath.haversine(fix.getLatitude(), fix.getLongitude(),
+                nextStop.latitude, nextStop.longitude) < radius;
+
+        if (moving || nearStop) {
+            slowSinceNanos = -1;
+            if (!fastMode) {
+                requestUpdates(true);
+            }
+        } else if (fastMode) {
+            long now = fix.getElapsedRealtimeNanos();
+            if (slowSinceNanos < 0) {
+                slowSinceNanos = now;
+            } else if (now - slowSinceNanos >= SLOW_DWELL_MS * 1_000_000) {
+                requestUpdates(false);
+            }
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void requestUpdates(boolean fast) {
+        fastMode = fast;
+        slowSinceNanos = -1;
+        LocationRequest request = fast
+                ? new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, FAST_INTERVAL_MS).build()
+                : new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, SLOW_INTERVAL_MS)
+                        .setMinUpdateIntervalMillis(FAST_INTERVAL_MS)
+                        .build();
+        // Requesting again with the same callback replaces the previous request
+        client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+        Log.d(TAG, "Intervalle de position : " + (fast ? FAST_INTERVAL_MS : SLOW_INTERVAL_MS) + " ms");
+    }
+}
@@ -0,0 +1,80 @@
+package data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents a single operation inside a {@link BatchRequest} sent to the
+ * Amazi batch endpoint: either a delivery status change or the removal of a
+ * package from the delivery.
+ */
+public class BatchOperation {
+    /** Operation type for a delivery status change. */
+    public static final String TYPE_STATUS = "STATUT";
+
+    /** Operation type for the removal of a package from the delivery. */
+    public static final String TYPE_DELETE = "SUPPRESSION";
+
+    @SerializedName("type")
+    private final String type;
+
+    @SerializedName("livraisonId")
+    private final int livraisonId;
+
+    @SerializedName("colisId")
+    private final int colisId;
+
+    @SerializedName("livreurId")
+    private final String livreurId;
+
+    @SerializedName("nouveauStatut")
+    private final Integer nouveauStatut;
+
+    @SerializedName("idempotencyKey")
+    private final String idempotencyKey;
+
+    private BatchOperation(String type, int livraisonId, int colisId, String livreurId,
+                           Integer nouveauStatut, String idempotencyKey) {
+        this.type = type;
+        this.livraisonId = livraisonId;
+        this.colisId = colisId;
+        this.livreurId = livreurId;
+        this.nouveauStatut = nouveauStatut;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Creates a status change operation.
+     *
+     * @param livraisonId    the delivery ID
+     * @param colisId        the package ID
+     * @param livreurId      the ID of the courier performing the update
+     * @param nouveauStatut  the new status (0=Pending/1=Ongoing/2=Delivered/3=Absent)
+     * @param idempotencyKey the unique key of the operation
+     * @return a new {@link BatchOperation}
+     */
+    public static BatchOperation statusUpdate(int livraisonId, int colisId, String livreurId,
+                                              int nouveauStatut, String idempotencyKey) {
+        return new BatchOperation(TYPE_STATUS, livraisonId, colisId, livreurId, nouveauStatut, idempotencyKey);
+    }
+
+    /**
+     * Creates a package removal operation.
+     *
+     * @param livraisonId    the delivery ID
+     * @param colisId        the package ID
+     * @param idempotencyKey the unique key of the operation
+     * @return a new {@link BatchOperation}
+     */
+    public static BatchOperation deletion(int livraisonId, int colisId, String idempotencyKey) {
+        return new BatchOperation(TYPE_DELETE, livraisonId, colisId, null, null, idempotencyKey);
+    }
+
+    /**
+     * Returns the unique key of this operation.
+     *
+     * @return the idempotency key
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
@@ -0,0 +1,32 @@
+package data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * Represents the body sent to the Amazi batch endpoint: an ordered list of
+ * {@link BatchOperation} applied by the server in the same order.
+ */
+public class BatchRequest {
+    @SerializedName("operations")
+    private final List<BatchOperation> operations;
+
+    /**
+     * Creates a new {@code BatchRequest}.
+     *
+     * @param operations the operations to apply, in order
+     */
+    public BatchRequest(List<BatchOperation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Returns the operations of this batch.
+     *
+     * @return a {@link List} of {@link BatchOperation}
+     */
+    public List<BatchOperation> getOperations() {
+        return operations;
+    }
+}
@@ -0,0 +1,52 @@
+package data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * Represents the response of the Amazi batch endpoint, containing the
+ * outcome of every operation of the request.
+ */
+public class BatchResponse {
+    @SerializedName("resultats")
+    private List<Result> results;
+
+    /**
+     * Returns the per-operation results.
+     *
+     * @return a {@link List} of {@link Result}, or {@code null} if the body was empty
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Outcome of a single operation, identified by its idempotency key.
+     */
+    public static class Result {
+        @SerializedName("idempotencyKey")
+        private String idempotencyKey;
+
+        @SerializedName("code")
+        private int code;
+
+        /**
+         * Returns the key of the operation this result refers to.
+         *
+         * @return the idempotency key
+         */
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        /**
+         * Returns the HTTP-like status code of the operation (2xx = applied).
+         *
+         * @return the status code
+         */
+        public int getCode() {
+            return code;
+        }
+    }
+}
@@ -8,12 +8,16 @@ import android.os.Parcelable;
  * Represents a delivery package (Colis) with associated details including
  * client name, delivery address, package number, current status, and
  * geographic coordinates.
+ * <p>
+ * Instances are immutable: a status change produces a copy through
+ * {@link #withStatus(int)}. Two packages are equal when they have the same number.
+ * </p>
  */
 public class Colis implements Parcelable {
     private final String name;
     private final String address;
     private final int number;
-    private int status;
+    private final int status;
     private final double latitude;
     private final double longitude;
 
@@ -27,10 +31,14 @@ public class Colis implements Parcelable {
      * @param longitude The longitude coordinate for the delivery location
      */
     public Colis(String name, String address, int number, double latitude, double longitude) {
+        this(name, address, number, -1, latitude, longitude);
+    }
+
+    private Colis(String name, String address, int number, int status, double latitude, double longitude) {
         this.name = name;
         this.address = address;
         this.number = number;
-        this.status = -1;
+        this.status = status;
         this.latitude = latitude;
         this.longitude = longitude;
     }
@@ -86,12 +94,14 @@ public class Colis implements Parcelable {
     }
 
     /**
-     * Updates the delivery status for this package.
+     * Returns a copy of this package with another delivery status.
      *
      * @param status the new status to assign
+     * @return this instance if the status is unchanged, otherwise a new {@link Colis}
      */
-    public void setStatus(int status) {
-        this.status = status;
+    public Colis withStatus(int status) {
+        if (status == this.status) return this;
+        return new Colis(name, address, number, status, latitude, longitude);
     }
 
     /**
@@ -113,6 +123,18 @@ public class Colis implements Parcelable {
         return longitude;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Colis)) return false;
+        return number == ((Colis) o).number;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(number);
+    }
+
     public static final Creator<Colis> CREATOR = new Creator<Colis>() {
         @Override
         public Colis createFromParcel(Parcel in) {
@@ -0,0 +1,192 @@
+package data.model;
+
+import java.util.Arrays;
+
+/**
+ * Compact, read-only representation of a Directions route.
+ * <p>
+ * Only what the app uses is kept: the distance and duration of each leg, the
+ * waypoint order and the geometry. Points are stored in two primitive arrays of
+ * coordinates scaled by 1e5 (the precision of Google's encoded polylines), and each
+ * leg is a range of that array, so a 100-stop route costs a few hundred KB less than
+ * the equivalent tree of Gson objects and {@code LatLng} lists.
+ * </p>
+ * <p>
+ * Instances are built by {@link data.api.maps.DirectionsStreamParser} and are immutable.
+ * </p>
+ */
+public final class CompactRoute {
+
+    /** Scale of the stored coordinates (degrees × 1e5). */
+    public static final double COORDINATE_SCALE = 1e5;
+
+    private final int[] legDistances;
+    private final int[] legDurations;
+    private final int[] legPointStart;
+    private final int[] latE5;
+    private final int[] lngE5;
+    private final int pointCount;
+    private final int[] waypointOrder;
+
+    /**
+     * Creates a route from already-built arrays; the arrays are not copied.
+     *
+     * @param legDistances  distance of each leg, in meters
+     * @param legDurations  duration of each leg, in seconds
+     * @param legPointStart index of the first point of each leg, followed by the point count
+     * @param latE5         latitudes × 1e5 (may be longer than {@code pointCount})
+     * @param lngE5         longitudes × 1e5 (may be longer than {@code pointCount})
+     * @param pointCount    number of points used in {@code latE5} and {@code lngE5}
+     * @param waypointOrder visiting order of the waypoints, as indices into the request's list
+     */
+    public CompactRoute(int[] legDistances, int[] legDurations, int[] legPointStart,
+                        int[] latE5, int[] lngE5, int pointCount, int[] waypointOrder) {
+        this.legDistances = legDistances;
+        this.legDurations = legDurations;
+        this.legPointStart = legPointStart;
+        this.latE5 = latE5;
+        this.lngE5 = lngE5;
+        this.pointCount = pointCount;
+        this.waypointOrder = waypointOrder;
+    }
+
+    /** @return the number of legs of the route */
+    public int getLegCount() {
+        return legDistances.length;
+    }
+
+    /**
+     * @param leg a leg index
+     * @return the distance of the leg, in meters
+     */
+    public int getLegDistance(int leg) {
+        return legDistances[leg];
+    }
+
+    /**
+     * @param leg a leg index
+     * @return the duration of the leg, in seconds
+     */
+    public int getLegDuration(int leg) {
+        return legDurations[leg];
+    }
+
+    /**
+     * @param leg a leg index, or {@link #getLegCount()} for the end of the geometry
+     * @return the index of the first point of the leg
+     */
+    public int getLegPointStart(int leg) {
+        return legPointStart[leg];
+    }
+
+    /** @return the total number of points of the geometry */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @param point a point index
+     * @return the latitude of the point, in degrees
+     */
+    public double getLatitude(int point) {
+        return latE5[point] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param point a point index
+     * @return the longitude of the point, in degrees
+     */
+    public double getLongitude(int point) {
+        return lngE5[point] / COORDINATE_SCALE;
+    }
+
+    /**
+     * @param point a point index
+     * @return the latitude of the point, in degrees × 1e5
+     */
+    public int getLatitudeE5(int point) {
+        return latE5[point];
+    }
+
+    /**
+     * @param point a point index
+     * @return the longitude of the point, in degrees × 1e5
+     */
+    public int getLongitudeE5(int point) {
+        return lngE5[point];
+    }
+
+    /** @return the number of waypoints in {@link #getWaypoint(int) the waypoint order} */
+    public int getWaypointCount() {
+        return waypointOrder.length;
+    }
+
+    /**
+     * @param position a position in the visiting order
+     * @return the index, in the request's waypoint list, of the waypoint visited at that position
+     */
+    public int getWaypoint(int position) {
+        return waypointOrder[position];
+    }
+
+    /**
+     * Returns a copy of this route with another waypoint order, used when the stops were
+     * sequenced on the device and sent to the API already in visiting order.
+     *
+     * @param order indices into the original waypoint list
+     * @return a route sharing this route's geometry
+     */
+    public CompactRoute withWaypointOrder(int[] order) {
+        return new CompactRoute(legDistances, legDurations, legPointStart, latE5, lngE5, pointCount, order.clone());
+    }
+
+    /**
+     * Joins consecutive routes whose boundary points coincide (the destination of one
+     * segment is the origin of the next) into a single route.
+     *
+     * @param segments      the routes to join, in driving order
+     * @param waypointOrder the waypoint order of the joined route
+     * @return the joined route
+     */
+    public static CompactRoute concat(CompactRoute[] segments, int[] waypointOrder) {
+        int legs = 0;
+        int points = 0;
+        for (CompactRoute segment : segments) {
+            legs += segment.getLegCount();
+            points += segment.pointCount;
+        }
+
+        int[] distances = new int[legs];
+        int[] durations = new int[legs];
+        int[] starts = new int[legs + 1];
+        int[] lats = new int[points];
+        int[] lngs = new int[points];
+        int leg = 0;
+        int count = 0;
+        for (CompactRoute segment : segments) {
+            int first = 0;
+            if (count > 0 && segment.pointCount > 0
+                    && lats[count - 1] == segment.latE5[0] && lngs[count - 1] == segment.lngE5[0]) {
+                first = 1;
+            }
+            for (int i = 0; i < segment.getLegCount(); i++) {
+                distances[leg] = segment.legDistances[i];
+                durations[leg] = segment.legDurations[i];
+                starts[leg] = count + Math.max(segment.legPointStart[i] - first, 0);
+                leg++;
+            }
+            int copied = segment.pointCount - first;
+            System.arraycopy(segment.latE5, first, lats, count, copied);
+            System.arraycopy(segment.lngE5, first, lngs, count, copied);
+            count += copied;
+        }
+        starts[legs] = count;
+        return new CompactRoute(distances, durations, starts, lats, lngs, count, waypointOrder.clone());
+    }
+
+    @Override
+    public String toString() {
+        return "CompactRoute{legs=" + getLegCount() + ", points=" + pointCount
+                + ", waypointOrder=" + Arrays.toString(waypointOrder) + '}';
+    }
+}
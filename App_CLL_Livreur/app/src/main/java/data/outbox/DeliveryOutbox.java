@@ -0,0 +1,189 @@
+package data.outbox;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import data.api.HttpClientProvider;
+import data.api.amazi.AmaziServices;
+
+/**
+ * Durable, ordered outbox for the delivery status updates and package deletions
+ * sent to the Amazi API.
+ * <p>
+ * Callers apply the change to the UI state right away and hand it to
+ * {@link #enqueue(OutboxEntry)}, which never blocks on the network. Entries are
+ * persisted in an {@link OutboxJournal} by an I/O thread, so a write is never held
+ * up by a request in progress, and sent one after another, in the order they were
+ * recorded, by a dedicated worker thread. Operations recorded within a
+ * short window are coalesced and sent together through {@link OutboxBatcher}.
+ * Network, 5xx and authentication (401, 403) failures are retried with exponential
+ * backoff (with jitter); the queue is drained again as soon as the system reports a
+ * network. Entries survive a process kill and are resumed the next time
+ * {@link #getInstance(Context)} is called.
+ * </p>
+ */
+public class DeliveryOutbox {
+
+    private static final String TAG = "DeliveryOutbox";
+    private static final String JOURNAL_FILE = "delivery_outbox.journal";
+
+    /** First retry delay after a failure. */
+    private static final long BASE_BACKOFF_MS = 2_000;
+
+    /** Upper bound of the retry delay. */
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+
+    /** Maximum number of operations grouped in a single request. */
+    private static final int MAX_BATCH_SIZE = 50;
+
+    /** How long new operations are collected before being sent together. */
+    private static final long BATCH_WINDOW_MS = 750;
+
+    private static volatile DeliveryOutbox instance;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "delivery-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "delivery-outbox-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final MutableLiveData<Integer> pendingCount = new MutableLiveData<>(0);
+    private final Random random = new Random();
+    private final OutboxBatcher batcher = new OutboxBatcher(AmaziServices.getInstance());
+
+    // Set once by the I/O thread; the drain waits for it.
+    private volatile OutboxJournal journal;
+
+    // Only accessed from the executor thread.
+    private ScheduledFuture<?> scheduledDrain;
+    private int failedAttempts;
+
+    private DeliveryOutbox(Context appContext) {
+        File journalFile = new File(appContext.getFilesDir(), JOURNAL_FILE);
+        ioExecutor.execute(() -> {
+            journal = new OutboxJournal(journalFile, HttpClientProvider.getGson());
+            publishPendingCount();
+            executor.execute(() -> scheduleDrain(0));
+        });
+        registerNetworkCallback(appContext);
+    }
+
+    /**
+     * Returns the app-wide outbox, loading its journal on first use.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link DeliveryOutbox}
+     */
+    public static DeliveryOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DeliveryOutbox.class) {
+                if (instance == null) {
+                    instance = new DeliveryOutbox(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Records an operation and schedules its delivery. Returns immediately; the entry is
+     * written to the journal on the I/O thread, even while a request is in progress.
+     *
+     * @param entry the operation to send
+     */
+    public void enqueue(OutboxEntry entry) {
+        ioExecutor.execute(() -> {
+            try {
+                journal.append(entry);
+            } catch (IOException e) {
+                Log.e(TAG, "Écriture du journal impossible, opération gardée en mémoire", e);
+            }
+            Log.d(TAG, "Opération en attente : " + entry.getType() + " colisId=" + entry.getColisId());
+            publishPendingCount();
+            long delay = journal.size() >= MAX_BATCH_SIZE ? 0 : BATCH_WINDOW_MS;
+            executor.execute(() -> scheduleDrain(delay));
+        });
+    }
+
+    /**
+     * Returns the number of operations not yet acknowledged by the server.
+     *
+     * @return LiveData with the pending count
+     */
+    public LiveData<Integer> getPendingCount() {
+        return pendingCount;
+    }
+
+    private void registerNetworkCallback(Context appContext) {
+        ConnectivityManager connectivityManager = appContext.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) return;
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(@NonNull Network network) {
+                executor.execute(() -> {
+                    failedAttempts = 0;
+                    scheduleDrain(0);
+                });
+            }
+        });
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (delayMs > 0 || scheduledDrain.getDelay(TimeUnit.MILLISECONDS) <= 0) return;
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrain = executor.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        scheduledDrain = null;
+        // Not loaded yet: the I/O thread schedules a drain once it is
+        if (journal == null) return;
+        while (journal.size() > 0) {
+            OutboxBatcher.Outcome outcome = batcher.send(journal.head(MAX_BATCH_SIZE));
+            for (String id : outcome.completedIds) {
+                journal.acknowledge(id);
+            }
+            publishPendingCount();
+
+            if (outcome.retry || outcome.completedIds.isEmpty()) {
+                Log.w(TAG, "Opérations en attente, nouvelle tentative plus tard");
+                scheduleRetry();
+                return;
+            }
+            failedAttempts = 0;
+        }
+    }
+
+    private void scheduleRetry() {
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failedAttempts, 16));
+        delay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        failedAttempts++;
+        scheduleDrain(delay);
+    }
+
+    private void publishPendingCount() {
+        pendingCount.postValue(journal.size());
+    }
+}
@@ -0,0 +1,234 @@
+package data.outbox;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import data.api.amazi.AmaziServices;
+import data.model.BatchOperation;
+import data.model.BatchRequest;
+import data.model.BatchResponse;
+import retrofit2.Response;
+import ui.DeliveryIdHolder;
+
+/**
+ * Sends a window of {@link OutboxEntry} to the Amazi API, coalescing them first
+ * and grouping them into a single batch request when the server supports it.
+ * <p>
+ * Coalescing drops operations made obsolete by a later one on the same package:
+ * a status change followed by another status change or by a removal, and a
+ * removal followed by another removal. A removal followed by a status change
+ * (the "undo" of a swipe) is kept as is.
+ * </p>
+ * <p>
+ * When the batch endpoint answers 404, 405 or 501 the batcher falls back to one
+ * request per operation and only probes the batch endpoint again after
+ * {@link #BATCH_REPROBE_INTERVAL_MS}.
+ * </p>
+ */
+class OutboxBatcher {
+
+    private static final String TAG = "OutboxBatcher";
+
+    /** Delay before trying the batch endpoint again after the server rejected it. */
+    static final long BATCH_REPROBE_INTERVAL_MS = 30 * 60_000;
+
+    private final AmaziServices services;
+    private long batchUnsupportedSince = -1;
+
+    /**
+     * Result of {@link #send(List)}: the entries that no longer need to be sent,
+     * and whether the remaining ones should be retried later.
+     */
+    static class Outcome {
+        final List<String> completedIds = new ArrayList<>();
+        boolean retry;
+    }
+
+    OutboxBatcher(AmaziServices services) {
+        this.services = services;
+    }
+
+    /**
+     * Sends the given window of entries, oldest first. Blocks on the network.
+     *
+     * @param window the oldest pending entries of the outbox
+     * @return the {@link Outcome} of the attempt
+     */
+    Outcome send(List<OutboxEntry> window) {
+        Outcome outcome = new Outcome();
+        List<OutboxEntry> survivors = new ArrayList<>(window.size());
+        coalesce(window, survivors, outcome.completedIds);
+
+        List<OutboxEntry> sendable = new ArrayList<>(survivors.size());
+        for (OutboxEntry entry : survivors) {
+            if (resolveLivraisonId(entry) <= 0) {
+                outcome.retry = true;
+                break;
+            }
+            sendable.add(entry);
+        }
+        if (sendable.isEmpty()) return outcome;
+
+        if (sendable.size() > 1 && isBatchEndpointWorthTrying()) {
+            Boolean batched = sendAsBatch(sendable, outcome);
+            if (batched != null) {
+                outcome.retry |= !batched;
+                return outcome;
+            }
+        }
+
+        sendOneByOne(sendable, outcome);
+        return outcome;
+    }
+
+    /**
+     * Removes the entries superseded by a later entry on the same package.
+     *
+     * @param window       the entries to coalesce, oldest first
+     * @param survivors    receives the entries that must still be sent, oldest first
+     * @param supersededIds receives the ids of the dropped entries
+     */
+    static void coalesce(List<OutboxEntry> window, List<OutboxEntry> survivors, List<String> supersededIds) {
+        Map<Integer, OutboxEntry.Type> nextType = new HashMap<>();
+        for (int i = window.size() - 1; i >= 0; i--) {
+            OutboxEntry entry = window.get(i);
+            OutboxEntry.Type next = nextType.get(entry.getColisId());
+            boolean keep = next == null
+                    || (entry.getType() == OutboxEntry.Type.DELETE && next == OutboxEntry.Type.STATUS);
+            if (keep) {
+                survivors.add(entry);
+                nextType.put(entry.getColisId(), entry.getType());
+            } else {
+                supersededIds.add(entry.getId());
+            }
+        }
+        Collections.reverse(survivors);
+    }
+
+    private boolean isBatchEndpointWorthTrying() {
+        return batchUnsupportedSince < 0
+                || System.currentTimeMillis() - batchUnsupportedSince > BATCH_REPROBE_INTERVAL_MS;
+    }
+
+    /**
+     * @return {@code true} if every entry got a final answer, {@code false} if some must be
+     *         retried, {@code null} if the server has no batch endpoint
+     */
+    private Boolean sendAsBatch(List<OutboxEntry> entries, Outcome outcome) {
+        List<BatchOperation> operations = new ArrayList<>(entries.size());
+        for (OutboxEntry entry : entries) {
+            operations.add(toOperation(entry));
+        }
+
+        Response<BatchResponse> response;
+        try {
+            response = services.sendBatchBlocking(new BatchRequest(operations));
+        } catch (IOException e) {
+            Log.w(TAG, "Envoi groupé impossible : " + e.getMessage());
+            return false;
+        }
+
+        int code = response.code();
+        if (code == 404 || code == 405 || code == 501) {
+            Log.i(TAG, "Pas d'endpoint groupé (HTTP " + code + "), envoi opération par opération");
+            batchUnsupportedSince = System.currentTimeMillis();
+            return null;
+        }
+        batchUnsupportedSince = -1;
+        if (!response.isSuccessful() || response.body() == null || response.body().getResults() == null) {
+            Log.w(TAG, "Envoi groupé refusé (HTTP " + code + ")");
+            return false;
+        }
+
+        Map<String, Integer> codes = new HashMap<>();
+        for (BatchResponse.Result result : response.body().getResults()) {
+            codes.put(result.getIdempotencyKey(), result.getCode());
+        }
+
+        // Once an entry of a package must be retried, its later entries are kept too, so
+        // that the retry replays them in order (e.g. a removal, then its undo)
+        Set<Integer> retriedColis = new HashSet<>();
+        boolean allDone = true;
+        for (OutboxEntry entry : entries) {
+            Integer itemCode = codes.get(entry.getId());
+            if (itemCode == null || isRetryable(itemCode) || retriedColis.contains(entry.getColisId())) {
+                retriedColis.add(entry.getColisId());
+                allDone = false;
+                continue;
+            }
+            logIfRejected(entry, itemCode);
+            outcome.completedIds.add(entry.getId());
+        }
+        Log.d(TAG, "Envoi groupé : " + outcome.completedIds.size() + " opération(s) terminée(s)");
+        return allDone;
+    }
+
+    private void sendOneByOne(List<OutboxEntry> entries, Outcome outcome) {
+        for (OutboxEntry entry : entries) {
+            int code;
+            try {
+                code = sendSingle(entry);
+            } catch (IOException e) {
+                Log.w(TAG, "Envoi impossible (" + e.getMessage() + ")");
+                outcome.retry = true;
+                return;
+            }
+            if (isRetryable(code)) {
+                Log.w(TAG, "Envoi refusé temporairement (HTTP " + code + ")");
+                outcome.retry = true;
+                return;
+            }
+            logIfRejected(entry, code);
+            outcome.completedIds.add(entry.getId());
+        }
+    }
+
+    private int sendSingle(OutboxEntry entry) throws IOException {
+        int livraisonId = resolveLivraisonId(entry);
+        switch (entry.getType()) {
+            case STATUS:
+                return services.updateDeliveryStatusBlocking(livraisonId, entry.getColisId(),
+                        entry.getLivreurId(), entry.getStatut(), entry.getId());
+            case DELETE:
+                return services.deleteColisBlocking(livraisonId, entry.getColisId(), entry.getId());
+            default:
+                return 400;
+        }
+    }
+
+    private BatchOperation toOperation(OutboxEntry entry) {
+        int livraisonId = resolveLivraisonId(entry);
+        if (entry.getType() == OutboxEntry.Type.DELETE) {
+            return BatchOperation.deletion(livraisonId, entry.getColisId(), entry.getId());
+        }
+        return BatchOperation.statusUpdate(livraisonId, entry.getColisId(), entry.getLivreurId(),
+                entry.getStatut(), entry.getId());
+    }
+
+    private static int resolveLivraisonId(OutboxEntry entry) {
+        return entry.getLivraisonId() > 0 ? entry.getLivraisonId() : DeliveryIdHolder.getDeliveryId();
+    }
+
+    /**
+     * 401 and 403 are retried too: the token only lives in memory, so entries restored
+     * after a process kill are rejected until the courier logs in again.
+     */
+    static boolean isRetryable(int code) {
+        return code == 401 || code == 403 || code == 408 || code == 429 || code >= 500;
+    }
+
+    private static void logIfRejected(OutboxEntry entry, int code) {
+        if (code >= 400) {
+            Log.e(TAG, "Opération rejetée par le serveur (HTTP " + code + ") : "
+                    + entry.getType() + " colisId=" + entry.getColisId());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package data.outbox;
+
+import java.util.UUID;
+
+/**
+ * A pending write to the Amazi API recorded in the {@link DeliveryOutbox}.
+ * <p>
+ * Each entry carries a unique id that is sent as the {@code Idempotency-Key}
+ * header, so the server can safely ignore a replay of an operation that had
+ * already been applied before the acknowledgement was lost.
+ * </p>
+ */
+public class OutboxEntry {
+
+    /** Kind of operation recorded in the outbox. */
+    public enum Type {
+        /** Delivery status change of a package. */
+        STATUS,
+        /** Removal of a package from the delivery. */
+        DELETE
+    }
+
+    private final String id;
+    private final Type type;
+    private final int livraisonId;
+    private final int colisId;
+    private final String livreurId;
+    private final int statut;
+    private final long createdAt;
+
+    private OutboxEntry(Type type, int livraisonId, int colisId, String livreurId, int statut) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.livraisonId = livraisonId;
+        this.colisId = colisId;
+        this.livreurId = livreurId;
+        this.statut = statut;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates an entry for a delivery status change.
+     *
+     * @param livraisonId the delivery ID known at the time of the change
+     * @param colisId     the package ID
+     * @param livreurId   the ID of the courier performing the update
+     * @param statut      the new status (1=Ongoing/2=Delivered/3=Absent)
+     * @return a new {@link OutboxEntry}
+     */
+    public static OutboxEntry statusUpdate(int livraisonId, int colisId, String livreurId, int statut) {
+        return new OutboxEntry(Type.STATUS, livraisonId, colisId, livreurId, statut);
+    }
+
+    /**
+     * Creates an entry for the removal of a package from the delivery.
+     *
+     * @param livraisonId the delivery ID known at the time of the removal
+     * @param colisId     the package ID
+     * @return a new {@link OutboxEntry}
+     */
+    public static OutboxEntry deletion(int livraisonId, int colisId) {
+        return new OutboxEntry(Type.DELETE, livraisonId, colisId, null, -1);
+    }
+
+    /**
+     * Returns the unique id of this entry, also used as idempotency key.
+     *
+     * @return the entry id
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getLivraisonId() {
+        return livraisonId;
+    }
+
+    public int getColisId() {
+        return colisId;
+    }
+
+    public String getLivreurId() {
+        return livreurId;
+    }
+
+    public int getStatut() {
+        return statut;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,185 @@
+package data.outbox;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Append-only journal persisting the {@link DeliveryOutbox} on local storage.
+ * <p>
+ * Every enqueued entry is written as a {@code PUT} record and every completed one
+ * as an {@code ACK} record, one JSON object per line, and the file is synced to disk
+ * before the call returns. On load the records are replayed in order, which restores
+ * the pending entries after the process has been killed. A truncated last line
+ * (crash in the middle of a write) is ignored. Once enough entries have been
+ * acknowledged the file is compacted by atomically replacing it with the pending
+ * entries only.
+ * </p>
+ * <p>
+ * The methods are synchronized: the outbox appends from its I/O thread and acknowledges
+ * from the thread that sends the entries.
+ * </p>
+ */
+class OutboxJournal {
+
+    private static final String TAG = "OutboxJournal";
+
+    /** Number of ACK records after which the file is rewritten. */
+    private static final int COMPACTION_THRESHOLD = 64;
+
+    private final File file;
+    private final Gson gson;
+    private final LinkedHashMap<String, OutboxEntry> pending = new LinkedHashMap<>();
+    private int ackCount;
+
+    /** A single line of the journal. */
+    private static class Record {
+        static final String PUT = "PUT";
+        static final String ACK = "ACK";
+
+        String op;
+        String id;
+        OutboxEntry entry;
+
+        Record(String op, String id, OutboxEntry entry) {
+            this.op = op;
+            this.id = id;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Opens (or creates) the journal stored in the given file and replays it.
+     *
+     * @param file the journal file
+     * @param gson the Gson instance used to (de)serialize records
+     */
+    OutboxJournal(File file, Gson gson) {
+        this.file = file;
+        this.gson = gson;
+        load();
+    }
+
+    /**
+     * Appends an entry to the journal. The entry is queued in memory even if the
+     * write fails, so it is still sent while the process is alive.
+     *
+     * @param entry the entry to persist
+     * @throws IOException if the record could not be written
+     */
+    synchronized void append(OutboxEntry entry) throws IOException {
+        pending.put(entry.getId(), entry);
+        write(new Record(Record.PUT, entry.getId(), entry));
+    }
+
+    /**
+     * Marks an entry as completed and compacts the file when needed.
+     *
+     * @param id the id of the completed entry
+     */
+    synchronized void acknowledge(String id) {
+        if (pending.remove(id) == null) return;
+        try {
+            write(new Record(Record.ACK, id, null));
+            ackCount++;
+            if (ackCount >= COMPACTION_THRESHOLD) {
+                compact();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Impossible d'écrire l'acquittement " + id, e);
+        }
+    }
+
+    /**
+     * Returns up to {@code max} of the oldest pending entries.
+     *
+     * @param max the maximum number of entries to return
+     * @return the oldest pending entries, oldest first
+     */
+    synchronized List<OutboxEntry> head(int max) {
+        List<OutboxEntry> head = new ArrayList<>(Math.min(max, pending.size()));
+        for (OutboxEntry entry : pending.values()) {
+            if (head.size() >= max) break;
+            head.add(entry);
+        }
+        return head;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private void write(Record record) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write((gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            out.getFD().sync();
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    Log.w(TAG, "Enregistrement illisible ignoré : " + line);
+                    continue;
+                }
+                if (record == null || record.op == null) continue;
+
+                if (Record.PUT.equals(record.op) && record.entry != null) {
+                    pending.put(record.entry.getId(), record.entry);
+                } else if (Record.ACK.equals(record.op)) {
+                    pending.remove(record.id);
+                    ackCount++;
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Lecture du journal impossible", e);
+        }
+
+        Log.d(TAG, "Journal rechargé : " + pending.size() + " opération(s) en attente");
+        if (ackCount >= COMPACTION_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                Log.e(TAG, "Compaction du journal impossible", e);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp, false)) {
+            for (OutboxEntry entry : pending.values()) {
+                out.write((gson.toJson(new Record(Record.PUT, entry.getId(), entry)) + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Rename failed: " + tmp + " -> " + file);
+        }
+        ackCount = 0;
+    }
+}
@@ -0,0 +1,179 @@
+package data.tour;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import data.model.Colis;
+
+/**
+ * Holds the packages of the tour as a sequence of immutable {@link TourSnapshot}s.
+ * <p>
+ * The current snapshot lives in an {@link AtomicReference}: a change computes the next
+ * snapshot from the current one and installs it with a compare-and-set, retrying if
+ * another thread changed the tour in between. Every method can therefore be called from
+ * any thread, and {@link #getSnapshot()} always returns a consistent state without
+ * locking.
+ * </p>
+ * <p>
+ * {@link #getTour()} publishes the snapshots to the UI. A change made on the main thread
+ * is delivered right away; changes made elsewhere are coalesced and delivered with the
+ * latest snapshot on the next main-thread turn, so observers never see an older state
+ * after a newer one.
+ * </p>
+ * <p>
+ * When given a {@link TourStore}, each change that actually modified the tour is also
+ * written to it, one row at a time. Changes are then installed and handed to the store
+ * under one lock, so the store applies them in the order of the snapshots; reads stay
+ * lock-free.
+ * </p>
+ */
+public class TourRepository {
+
+    private final TourStore store;
+    private final AtomicReference<TourSnapshot> current = new AtomicReference<>(TourSnapshot.EMPTY);
+    private final MutableLiveData<TourSnapshot> tour = new MutableLiveData<>(TourSnapshot.EMPTY);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean publishPending = new AtomicBoolean();
+    private final Object storeLock = new Object();
+    private final Runnable publishLatest = () -> {
+        publishPending.set(false);
+        tour.setValue(current.get());
+    };
+
+    /** Creates a repository kept in memory only. */
+    public TourRepository() {
+        this(null);
+    }
+
+    /**
+     * Creates a repository that writes its changes to a store.
+     *
+     * @param store the {@link TourStore} to write to, or {@code null}
+     */
+    public TourRepository(TourStore store) {
+        this.store = store;
+    }
+
+    /** @return the current state of the tour */
+    public TourSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /** @return LiveData of the state of the tour, updated after each change */
+    public LiveData<TourSnapshot> getTour() {
+        return tour;
+    }
+
+    /**
+     * Adds a package, unless a package with the same number is already in the tour.
+     *
+     * @param colis the {@link Colis} to add
+     * @return {@code true} if the package was added
+     */
+    public boolean add(Colis colis) {
+        return update(snapshot -> snapshot.withAdded(colis), after -> store.insertColis(colis));
+    }
+
+    /**
+     * Removes a package from the tour.
+     *
+     * @param number the number of the package to remove
+     * @return {@code true} if the package was in the tour
+     */
+    public boolean remove(int number) {
+        return update(snapshot -> snapshot.withRemoved(number), after -> store.deleteColis(number));
+    }
+
+    /**
+     * Changes the delivery status of a package.
+     *
+     * @param number the number of the package
+     * @param status the new status (1=Ongoing/2=Delivered/3=Absent)
+     * @return {@code true} if the package is in the tour and its status changed
+     */
+    public boolean updateStatus(int number, int status) {
+        return update(snapshot -> snapshot.withStatus(number, status), after -> store.updateStatus(number, status));
+    }
+
+    /**
+     * Replaces the whole tour; packages whose number appears twice are only kept once.
+     *
+     * @param colis the new packages, in scan order
+     */
+    public void setAll(List<Colis> colis) {
+        update(snapshot -> snapshot.withAll(colis), after -> store.replaceColis(after.getColis()));
+    }
+
+    /** Removes every package from the tour. */
+    public void clear() {
+        UnaryOperator<TourSnapshot> change = snapshot -> snapshot.size() == 0 ? snapshot : snapshot.withAll(List.of());
+        if (store == null) {
+            install(change);
+            return;
+        }
+        synchronized (storeLock) {
+            // Written even if the tour is already empty, to drop a saved tour not restored yet
+            install(change);
+            store.replaceColis(List.of());
+        }
+    }
+
+    /**
+     * Installs a tour read back from the store, unless the tour was changed since this
+     * repository was created. Nothing is written back to the store.
+     *
+     * @param colis the saved packages, in scan order
+     * @return {@code true} if the saved tour was installed
+     */
+    public boolean restore(List<Colis> colis) {
+        if (colis.isEmpty()) return false;
+        return install(snapshot -> snapshot.getVersion() == 0 ? snapshot.withAll(colis) : snapshot) != null;
+    }
+
+    /**
+     * Applies a change and, if it modified the tour, hands the new snapshot to
+     * {@code write} before any later change is installed.
+     */
+    private boolean update(UnaryOperator<TourSnapshot> change, Consumer<TourSnapshot> write) {
+        if (store == null) return install(change) != null;
+        synchronized (storeLock) {
+            TourSnapshot after = install(change);
+            if (after == null) return false;
+            write.accept(after);
+            return true;
+        }
+    }
+
+    /** @return the installed snapshot, or {@code null} if the change left the tour as is */
+    private TourSnapshot install(UnaryOperator<TourSnapshot> change) {
+        TourSnapshot before;
+        TourSnapshot after;
+        do {
+            before = current.get();
+            after = change.apply(before);
+            if (after == before) return null;
+        } while (!current.compareAndSet(before, after));
+
+        publish();
+        return after;
+    }
+
+    private void publish() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainHandler.removeCallbacks(publishLatest);
+            publishPending.set(false);
+            tour.setValue(current.get());
+        } else if (publishPending.compareAndSet(false, true)) {
+            mainHandler.post(publishLatest);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package data.tour;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * App-wide state of the current tour, shared by every screen of the app.
+ * <p>
+ * The session owns the single {@link TourRepository} of the process and the last route
+ * applied, so moving from the preparation screens to the delivery screens hands over the
+ * packages and the computed route by reference: nothing is serialized into an intent and
+ * nothing is fetched or geocoded again.
+ * </p>
+ * <p>
+ * When the session is created, the tour saved in the {@link TourStore} is read back once;
+ * {@link #whenLoaded} lets a screen wait for it. Every change is written to the store.
+ * </p>
+ */
+public class TourSession {
+
+    private static volatile TourSession instance;
+
+    private final TourStore store;
+    private final TourRepository repository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile TourStore.SavedRoute route;
+
+    // Guarded by this
+    private boolean loaded;
+    private final List<Runnable> pendingCallbacks = new ArrayList<>();
+
+    private TourSession(Context appContext) {
+        store = TourStore.getInstance(appContext);
+        repository = new TourRepository(store);
+        store.load(saved -> {
+            repository.restore(saved.getColis());
+            if (route == null) {
+                route = saved.getRoute();
+            }
+            List<Runnable> callbacks;
+            synchronized (this) {
+                loaded = true;
+                callbacks = new ArrayList<>(pendingCallbacks);
+                pendingCallbacks.clear();
+            }
+            for (Runnable callback : callbacks) {
+                mainHandler.post(callback);
+            }
+        });
+    }
+
+    /**
+     * Returns the session of the current process, restoring the saved tour on first use.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link TourSession}
+     */
+    public static TourSession getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TourSession.class) {
+                if (instance == null) {
+                    instance = new TourSession(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** @return the packages of the tour */
+    public TourRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Runs {@code callback} on the main thread once the saved tour has been read back,
+     * right away if it already was.
+     *
+     * @param callback the code to run
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (this) {
+            if (!loaded) {
+                pendingCallbacks.add(callback);
+                return;
+            }
+        }
+        mainHandler.post(callback);
+    }
+
+    /** @return the last route applied, or {@code null} if there is none */
+    public TourStore.SavedRoute getRoute() {
+        return route;
+    }
+
+    /**
+     * Makes {@code route} the last route applied and saves it.
+     *
+     * @param route the route and its context
+     */
+    public void setRoute(TourStore.SavedRoute route) {
+        this.route = route;
+        store.saveRoute(route);
+    }
+
+    /**
+     * Records the number of stops completed on the last route.
+     *
+     * @param completedStops the number of completed stops
+     */
+    public void updateCompletedStops(int completedStops) {
+        TourStore.SavedRoute current = route;
+        if (current == null) return;
+
+        route = new TourStore.SavedRoute(current.getRoute(), current.getWaypointsHash(),
+                current.getWaypointCount(), current.getDestinationLat(), current.getDestinationLng(),
+                completedStops);
+        store.updateCompletedStops(completedStops);
+    }
+
+    /** Forgets the last route. */
+    public void clearRoute() {
+        route = null;
+        store.deleteRoute();
+    }
+
+    /** Ends the tour: empties the packages and the route, in memory and in the store. */
+    public void end() {
+        repository.clear();
+        route = null;
+        store.clear();
+    }
+}
@@ -0,0 +1,178 @@
+package data.tour;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.model.Colis;
+
+/**
+ * Immutable state of the tour at one point in time: the packages in scan order, indexed
+ * by number and grouped by delivery status.
+ * <p>
+ * Snapshots are published by {@link TourRepository}; each change builds a new snapshot
+ * from the previous one. The package list is copied once per change, the index is a
+ * clone of a primitive-keyed {@link SparseArray}, and only the status buckets touched by
+ * the change are rebuilt, the others being shared with the previous snapshot. Reading a
+ * package by number is a binary search and reading a status bucket is a lookup, so
+ * filtering never walks the whole tour. The position of a package in the list, used to
+ * check a scanned code against the tour, comes from a hash index built on first use and
+ * shared by the snapshots that do not move any package.
+ * </p>
+ */
+public final class TourSnapshot {
+
+    static final TourSnapshot EMPTY = new TourSnapshot(Collections.emptyList(), new SparseArray<>(),
+            new SparseArray<>(), 0);
+
+    private final List<Colis> colis;
+    private final SparseArray<Colis> byNumber;
+    private final SparseArray<List<Colis>> byStatus;
+    private final long version;
+    private volatile Map<Integer, Integer> positions;
+
+    private TourSnapshot(List<Colis> colis, SparseArray<Colis> byNumber,
+                         SparseArray<List<Colis>> byStatus, long version) {
+        this.colis = colis;
+        this.byNumber = byNumber;
+        this.byStatus = byStatus;
+        this.version = version;
+    }
+
+    /** @return the packages of the tour, in scan order (unmodifiable) */
+    public List<Colis> getColis() {
+        return colis;
+    }
+
+    /** @return the number of packages of the tour */
+    public int size() {
+        return colis.size();
+    }
+
+    /**
+     * @param number a package number
+     * @return the package with that number, or {@code null} if it is not in the tour
+     */
+    public Colis get(int number) {
+        return byNumber.get(number);
+    }
+
+    /**
+     * @param number a package number
+     * @return {@code true} if the package is in the tour
+     */
+    public boolean contains(int number) {
+        return byNumber.get(number) != null;
+    }
+
+    /**
+     * @param number a package number
+     * @return the position of the package in {@link #getColis()}, or -1 if it is not in the tour
+     */
+    public int indexOf(int number) {
+        Map<Integer, Integer> index = positions;
+        if (index == null) {
+            index = new HashMap<>(colis.size() * 2);
+            for (int i = 0; i < colis.size(); i++) {
+                index.put(colis.get(i).getNumber(), i);
+            }
+            positions = index;
+        }
+        Integer position = index.get(number);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param status a delivery status
+     * @return the packages with that status, in the order they got it (unmodifiable)
+     */
+    public List<Colis> getByStatus(int status) {
+        return byStatus.get(status, Collections.emptyList());
+    }
+
+    /** @return a number incremented by every change, starting at 0 for the empty tour */
+    public long getVersion() {
+        return version;
+    }
+
+    TourSnapshot withAdded(Colis item) {
+        if (contains(item.getNumber())) return this;
+
+        List<Colis> list = new ArrayList<>(colis.size() + 1);
+        list.addAll(colis);
+        list.add(item);
+        SparseArray<Colis> index = byNumber.clone();
+        index.put(item.getNumber(), item);
+        SparseArray<List<Colis>> buckets = byStatus.clone();
+        buckets.put(item.getStatus(), appended(getByStatus(item.getStatus()), item));
+        return new TourSnapshot(Collections.unmodifiableList(list), index, buckets, version + 1);
+    }
+
+    TourSnapshot withRemoved(int number) {
+        Colis item = get(number);
+        if (item == null) return this;
+
+        List<Colis> list = new ArrayList<>(colis);
+        list.remove(item);
+        SparseArray<Colis> index = byNumber.clone();
+        index.remove(number);
+        SparseArray<List<Colis>> buckets = byStatus.clone();
+        buckets.put(item.getStatus(), without(getByStatus(item.getStatus()), item));
+        return new TourSnapshot(Collections.unmodifiableList(list), index, buckets, version + 1);
+    }
+
+    TourSnapshot withStatus(int number, int status) {
+        Colis item = get(number);
+        if (item == null || item.getStatus() == status) return this;
+
+        Colis updated = item.withStatus(status);
+        List<Colis> list = new ArrayList<>(colis);
+        list.set(indexOf(number), updated);
+        SparseArray<Colis> index = byNumber.clone();
+        index.put(number, updated);
+        SparseArray<List<Colis>> buckets = byStatus.clone();
+        buckets.put(item.getStatus(), without(getByStatus(item.getStatus()), item));
+        buckets.put(status, appended(getByStatus(status), updated));
+        TourSnapshot next = new TourSnapshot(Collections.unmodifiableList(list), index, buckets, version + 1);
+        next.positions = positions;
+        return next;
+    }
+
+    TourSnapshot withAll(List<Colis> items) {
+        List<Colis> list = new ArrayList<>(items.size());
+        SparseArray<Colis> index = new SparseArray<>(items.size());
+        SparseArray<List<Colis>> buckets = new SparseArray<>();
+        for (Colis item : items) {
+            if (index.get(item.getNumber()) != null) continue;
+            list.add(item);
+            index.put(item.getNumber(), item);
+            List<Colis> bucket = buckets.get(item.getStatus());
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(item.getStatus(), bucket);
+            }
+            bucket.add(item);
+        }
+        for (int i = 0; i < buckets.size(); i++) {
+            buckets.setValueAt(i, Collections.unmodifiableList(buckets.valueAt(i)));
+        }
+        return new TourSnapshot(Collections.unmodifiableList(list), index, buckets, version + 1);
+    }
+
+    private static List<Colis> appended(List<Colis> bucket, Colis item) {
+        List<Colis> copy = new ArrayList<>(bucket.size() + 1);
+        copy.addAll(bucket);
+        copy.add(item);
+        return Collections.unmodifiableList(copy);
+    }
+
+    private static List<Colis> without(List<Colis> bucket, Colis item) {
+        List<Colis> copy = new ArrayList<>(bucket);
+        copy.remove(item);
+        return Collections.unmodifiableList(copy);
+    }
+}
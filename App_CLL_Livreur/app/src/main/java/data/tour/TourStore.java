@@ -0,0 +1,406 @@
+package data.tour;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import data.model.Colis;
+import data.model.CompactRoute;
+
+/**
+ * Local SQLite copy of the tour, so that it survives the process being killed.
+ * <p>
+ * The {@code colis} table holds the packages with their status and coordinates (no
+ * geocoding is needed to restore them), keyed by number and indexed by status and scan
+ * position. The single-row {@code route} table holds the last route: its geometry, the
+ * computed stop order and the number of stops completed. Each change of the tour is
+ * written on its own, as a single-row statement, by a dedicated worker thread; writes
+ * are applied in the order they were submitted, and {@link #load} runs after the writes
+ * submitted before it.
+ * </p>
+ */
+public class TourStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "TourStore";
+    private static final String DATABASE_NAME = "tour.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_COLIS = "colis";
+    private static final String TABLE_ROUTE = "route";
+
+    private static volatile TourStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tour-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed from the executor thread.
+    private long nextPosition = -1;
+
+    /** The tour read back from the database. */
+    public static final class SavedTour {
+        private final List<Colis> colis;
+        private final SavedRoute route;
+        private final long loadTimeMs;
+
+        SavedTour(List<Colis> colis, SavedRoute route, long loadTimeMs) {
+            this.colis = colis;
+            this.route = route;
+            this.loadTimeMs = loadTimeMs;
+        }
+
+        /** @return the packages, in scan order */
+        public List<Colis> getColis() {
+            return colis;
+        }
+
+        /** @return the last route, or {@code null} if none was saved */
+        public SavedRoute getRoute() {
+            return route;
+        }
+
+        /** @return the time taken to read the tour, in milliseconds */
+        public long getLoadTimeMs() {
+            return loadTimeMs;
+        }
+    }
+
+    /** The last route of the tour, with what is needed to check it still applies. */
+    public static final class SavedRoute {
+        private final CompactRoute route;
+        private final int waypointsHash;
+        private final int waypointCount;
+        private final double destinationLat;
+        private final double destinationLng;
+        private final int completedStops;
+
+        /**
+         * @param route          the route
+         * @param waypointsHash  {@code hashCode()} of the waypoint list the route was fetched for
+         * @param waypointCount  size of that list
+         * @param destinationLat latitude of the end of the route
+         * @param destinationLng longitude of the end of the route
+         * @param completedStops number of stops already completed
+         */
+        public SavedRoute(CompactRoute route, int waypointsHash, int waypointCount,
+                          double destinationLat, double destinationLng, int completedStops) {
+            this.route = route;
+            this.waypointsHash = waypointsHash;
+            this.waypointCount = waypointCount;
+            this.destinationLat = destinationLat;
+            this.destinationLng = destinationLng;
+            this.completedStops = completedStops;
+        }
+
+        public CompactRoute getRoute() {
+            return route;
+        }
+
+        public int getWaypointsHash() {
+            return waypointsHash;
+        }
+
+        public int getWaypointCount() {
+            return waypointCount;
+        }
+
+        public double getDestinationLat() {
+            return destinationLat;
+        }
+
+        public double getDestinationLng() {
+            return destinationLng;
+        }
+
+        public int getCompletedStops() {
+            return completedStops;
+        }
+    }
+
+    private TourStore(Context appContext) {
+        super(appContext, DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets load() read while a write is pending
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Returns the app-wide tour store.
+     *
+     * @param context any context; only its application context is retained
+     * @return the shared {@link TourStore}
+     */
+    public static TourStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TourStore.class) {
+                if (instance == null) {
+                    instance = new TourStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_COLIS + " ("
+                + "number INTEGER PRIMARY KEY, "
+                + "position INTEGER NOT NULL, "
+                + "name TEXT, "
+                + "address TEXT, "
+                + "status INTEGER NOT NULL, "
+                + "latitude REAL NOT NULL, "
+                + "longitude REAL NOT NULL)");
+        db.execSQL("CREATE INDEX idx_colis_status ON " + TABLE_COLIS + " (status)");
+        db.execSQL("CREATE INDEX idx_colis_position ON " + TABLE_COLIS + " (position)");
+        db.execSQL("CREATE TABLE " + TABLE_ROUTE + " ("
+                + "id INTEGER PRIMARY KEY CHECK (id = 0), "
+                + "waypoints_hash INTEGER NOT NULL, "
+                + "waypoint_count INTEGER NOT NULL, "
+                + "destination_lat REAL NOT NULL, "
+                + "destination_lng REAL NOT NULL, "
+                + "completed_stops INTEGER NOT NULL, "
+                + "geometry BLOB NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_COLIS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ROUTE);
+        onCreate(db);
+    }
+
+    /**
+     * Reads the saved tour in the background.
+     *
+     * @param callback receives the tour on the store's worker thread
+     */
+    public void load(Consumer<SavedTour> callback) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            List<Colis> colis = new ArrayList<>();
+            SavedRoute route = null;
+            try {
+                SQLiteDatabase db = getReadableDatabase();
+                try (Cursor cursor = db.query(TABLE_COLIS,
+                        new String[]{"name", "address", "number", "status", "latitude", "longitude"},
+                        null, null, null, null, "position")) {
+                    while (cursor.moveToNext()) {
+                        colis.add(new Colis(cursor.getString(0), cursor.getString(1), cursor.getInt(2),
+                                cursor.getDouble(4), cursor.getDouble(5)).withStatus(cursor.getInt(3)));
+                    }
+                }
+                try (Cursor cursor = db.query(TABLE_ROUTE,
+                        new String[]{"waypoints_hash", "waypoint_count", "destination_lat", "destination_lng",
+                                "completed_stops", "geometry"},
+                        null, null, null, null, null)) {
+                    if (cursor.moveToFirst()) {
+                        route = new SavedRoute(decodeRoute(cursor.getBlob(5)), cursor.getInt(0), cursor.getInt(1),
+                                cursor.getDouble(2), cursor.getDouble(3), cursor.getInt(4));
+                    }
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Lecture de la tournée impossible", e);
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            Log.d(TAG, colis.size() + " colis" + (route != null ? " et l'itinéraire" : "")
+                    + " restaurés en " + elapsed + " ms");
+            callback.accept(new SavedTour(colis, route, elapsed));
+        });
+    }
+
+    /**
+     * Saves a package added at the end of the tour.
+     *
+     * @param colis the added {@link Colis}
+     */
+    public void insertColis(Colis colis) {
+        write("Enregistrement du colis " + colis.getNumber() + " impossible", () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.insertWithOnConflict(TABLE_COLIS, null, toValues(colis, nextPosition(db)),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    /**
+     * Deletes a package.
+     *
+     * @param number the number of the removed package
+     */
+    public void deleteColis(int number) {
+        write("Suppression du colis " + number + " impossible",
+                () -> getWritableDatabase().delete(TABLE_COLIS, "number = ?", new String[]{String.valueOf(number)}));
+    }
+
+    /**
+     * Saves the new status of a package.
+     *
+     * @param number the number of the package
+     * @param status its new status
+     */
+    public void updateStatus(int number, int status) {
+        write("Enregistrement du statut du colis " + number + " impossible", () -> {
+            ContentValues values = new ContentValues();
+            values.put("status", status);
+            getWritableDatabase().update(TABLE_COLIS, values, "number = ?", new String[]{String.valueOf(number)});
+        });
+    }
+
+    /**
+     * Replaces every package, in a single transaction.
+     *
+     * @param colis the packages of the tour, in scan order
+     */
+    public void replaceColis(List<Colis> colis) {
+        List<Colis> copy = new ArrayList<>(colis);
+        write("Enregistrement des colis impossible", () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_COLIS, null, null);
+                for (int i = 0; i < copy.size(); i++) {
+                    db.insertWithOnConflict(TABLE_COLIS, null, toValues(copy.get(i), i),
+                            SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            nextPosition = copy.size();
+        });
+    }
+
+    /**
+     * Saves the last route, replacing the previous one.
+     *
+     * @param route the route and its context
+     */
+    public void saveRoute(SavedRoute route) {
+        write("Enregistrement de l'itinéraire impossible", () -> {
+            ContentValues values = new ContentValues();
+            values.put("id", 0);
+            values.put("waypoints_hash", route.getWaypointsHash());
+            values.put("waypoint_count", route.getWaypointCount());
+            values.put("destination_lat", route.getDestinationLat());
+            values.put("destination_lng", route.getDestinationLng());
+            values.put("completed_stops", route.getCompletedStops());
+            values.put("geometry", encodeRoute(route.getRoute()));
+            getWritableDatabase().insertWithOnConflict(TABLE_ROUTE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    /**
+     * Saves the number of stops completed on the last route.
+     *
+     * @param completedStops the number of completed stops
+     */
+    public void updateCompletedStops(int completedStops) {
+        write("Enregistrement des arrêts effectués impossible", () -> {
+            ContentValues values = new ContentValues();
+            values.put("completed_stops", completedStops);
+            getWritableDatabase().update(TABLE_ROUTE, values, "id = 0", null);
+        });
+    }
+
+    /** Deletes the last route. */
+    public void deleteRoute() {
+        write("Suppression de l'itinéraire impossible",
+                () -> getWritableDatabase().delete(TABLE_ROUTE, null, null));
+    }
+
+    /** Deletes the whole tour, at the end of the session. */
+    public void clear() {
+        write("Suppression de la tournée impossible", () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.delete(TABLE_COLIS, null, null);
+            db.delete(TABLE_ROUTE, null, null);
+            nextPosition = 0;
+        });
+    }
+
+    /**
+     * Runs a write on the worker thread. A failure is logged and the write is lost: the
+     * tour in memory stays valid, only its copy on disk is behind.
+     */
+    private void write(String failureMessage, Runnable write) {
+        executor.execute(() -> {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, failureMessage, e);
+            }
+        });
+    }
+
+    private long nextPosition(SQLiteDatabase db) {
+        if (nextPosition < 0) {
+            try (Cursor cursor = db.rawQuery("SELECT MAX(position) FROM " + TABLE_COLIS, null)) {
+                nextPosition = (cursor.moveToFirst() && !cursor.isNull(0)) ? cursor.getLong(0) + 1 : 0;
+            }
+        }
+        return nextPosition++;
+    }
+
+    private static ContentValues toValues(Colis colis, long position) {
+        ContentValues values = new ContentValues();
+        values.put("number", colis.getNumber());
+        values.put("position", position);
+        values.put("name", colis.getName());
+        values.put("address", colis.getAdresse());
+        values.put("status", colis.getStatus());
+        values.put("latitude", colis.getLatitude());
+        values.put("longitude", colis.getLongitude());
+        return values;
+    }
+
+    /**
+     * Packs a route as consecutive ints: leg count, point count, waypoint count, then the
+     * leg distances, durations and point starts, the coordinates and the waypoint order.
+     */
+    private static byte[] encodeRoute(CompactRoute route) {
+        int legs = route.getLegCount();
+        int points = route.getPointCount();
+        int waypoints = route.getWaypointCount();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + 3 * legs + 1 + 2 * points + waypoints));
+        buffer.putInt(legs).putInt(points).putInt(waypoints);
+        for (int i = 0; i < legs; i++) buffer.putInt(route.getLegDistance(i));
+        for (int i = 0; i < legs; i++) buffer.putInt(route.getLegDuration(i));
+        for (int i = 0; i <= legs; i++) buffer.putInt(route.getLegPointStart(i));
+        for (int i = 0; i < points; i++) buffer.putInt(route.getLatitudeE5(i)).putInt(route.getLongitudeE5(i));
+        for (int i = 0; i < waypoints; i++) buffer.putInt(route.getWaypoint(i));
+        return buffer.array();
+    }
+
+    private static CompactRoute decodeRoute(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int legs = buffer.getInt();
+        int points = buffer.getInt();
+        int waypoints = buffer.getInt();
+        int[] distances = new int[legs];
+        int[] durations = new int[legs];
+        int[] starts = new int[legs + 1];
+        int[] lats = new int[points];
+        int[] lngs = new int[points];
+        int[] order = new int[waypoints];
+        for (int i = 0; i < legs; i++) distances[i] = buffer.getInt();
+        for (int i = 0; i < legs; i++) durations[i] = buffer.getInt();
+        for (int i = 0; i <= legs; i++) starts[i] = buffer.getInt();
+        for (int i = 0; i < points; i++) {
+            lats[i] = buffer.getInt();
+            lngs[i] = buffer.getInt();
+        }
+        for (int i = 0; i < waypoints; i++) order[i] = buffer.getInt();
+        return new CompactRoute(distances, durations, starts, lats, lngs, points, order);
+    }
+}
@@ -0,0 +1,115 @@
+package route;
+
+/**
+ * Square matrix of travel costs between the nodes of a tour, stored row-major
+ * in a single primitive array.
+ * <p>
+ * Node 0 is the origin, nodes {@code 1..n} are the stops and node {@code n + 1}
+ * is the final destination. The cost unit only has to be consistent (meters for
+ * {@link #haversine}, seconds for a travel-time matrix downloaded once and cached).
+ * </p>
+ * <p>
+ * Costs may be asymmetric (one-way streets in a travel-time matrix); {@link #isSymmetric()}
+ * tells the optimizer whether reversing part of a tour changes its cost.
+ * </p>
+ */
+public final class DistanceMatrix {
+
+    /**
+     * Road distance is longer than the straight line; this factor keeps haversine
+     * costs in the same order of magnitude as driving distances.
+     */
+    private static final double DETOUR_FACTOR = 1.3;
+
+    private final int size;
+    private final double[] costs;
+    private final boolean symmetric;
+
+    /**
+     * Wraps an existing row-major cost array.
+     *
+     * @param size  the number of nodes
+     * @param costs {@code size * size} costs, {@code costs[i * size + j]} going from i to j
+     */
+    public DistanceMatrix(int size, double[] costs) {
+        if (costs.length != size * size) {
+            throw new IllegalArgumentException("Expected " + size * size + " costs, got " + costs.length);
+        }
+        this.size = size;
+        this.costs = costs;
+        this.symmetric = computeSymmetric(size, costs);
+    }
+
+    /**
+     * Builds a matrix of estimated road distances (in meters) from coordinates.
+     *
+     * @param originLat latitude of the origin
+     * @param originLng longitude of the origin
+     * @param destLat   latitude of the final destination
+     * @param destLng   longitude of the final destination
+     * @param stopLats  latitudes of the stops
+     * @param stopLngs  longitudes of the stops
+     * @return the matrix, with {@code stopLats.length + 2} nodes
+     */
+    public static DistanceMatrix haversine(double originLat, double originLng, double destLat, double destLng,
+                                           double[] stopLats, double[] stopLngs) {
+        int n = stopLats.length;
+        int size = n + 2;
+        double[] lats = new double[size];
+        double[] lngs = new double[size];
+        lats[0] = originLat;
+        lngs[0] = originLng;
+        System.arraycopy(stopLats, 0, lats, 1, n);
+        System.arraycopy(stopLngs, 0, lngs, 1, n);
+        lats[size - 1] = destLat;
+        lngs[size - 1] = destLng;
+
+        double[] costs = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                double d = DETOUR_FACTOR * GeoMath.haversine(lats[i], lngs[i], lats[j], lngs[j]);
+                costs[i * size + j] = d;
+                costs[j * size + i] = d;
+            }
+        }
+        return new DistanceMatrix(size, costs);
+    }
+
+    /**
+     * Returns the number of nodes (stops + origin + destination).
+     *
+     * @return the matrix size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cost of going from node {@code from} to node {@code to}.
+     *
+     * @param from the source node
+     * @param to   the target node
+     * @return the travel cost
+     */
+    public double cost(int from, int to) {
+        return costs[from * size + to];
+    }
+
+    /**
+     * Tells whether every cost is the same in both directions.
+     *
+     * @return {@code true} if {@code cost(i, j) == cost(j, i)} for all nodes
+     */
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    private static boolean computeSymmetric(int size, double[] costs) {
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                if (costs[i * size + j] != costs[j * size + i]) return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package route;
+
+/**
+ * Plain-Java geodesy helpers shared by the routing code.
+ * <p>
+ * Kept free of Android and Google Maps types so that the {@code route} package
+ * can run (and be benchmarked) on any JVM.
+ * </p>
+ */
+public final class GeoMath {
+
+    /** Mean Earth radius in meters. */
+    public static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private GeoMath() { }
+
+    /**
+     * Returns the great-circle distance between two coordinates.
+     *
+     * @param lat1 latitude of the first point, in degrees
+     * @param lng1 longitude of the first point, in degrees
+     * @param lat2 latitude of the second point, in degrees
+     * @param lng2 longitude of the second point, in degrees
+     * @return the distance in meters
+     */
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
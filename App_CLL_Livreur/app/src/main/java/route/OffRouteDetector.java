@@ -0,0 +1,220 @@
+package route;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when the courier has really left the fetched route and a new one is needed.
+ * <p>
+ * The segments of the route polyline are indexed in a uniform grid of
+ * {@link #CELL_SIZE_M} cells, so the distance of a fix to the current leg only looks at
+ * the segments of the 3 x 3 cells around it. A fix counts as off the route beyond
+ * {@link #OFF_ROUTE_M} (plus part of its accuracy radius); the courier is considered
+ * off the route after {@link #CONFIRMATION_FIXES} such fixes in a row, and back on it
+ * under {@link #ON_ROUTE_M} only, so GPS noise around the threshold does not flip the
+ * state. At most one re-route is requested per {@link #MIN_REROUTE_INTERVAL_MS}.
+ * </p>
+ * <p>
+ * Leg ranges follow the same convention as {@link RouteProgressTracker}. Once built,
+ * instances are only used from the main thread.
+ * </p>
+ */
+public final class OffRouteDetector {
+
+    /** Side of a grid cell, in meters; also the farthest distance measured exactly. */
+    private static final double CELL_SIZE_M = 100;
+
+    /** Distance from the leg beyond which a fix is off the route, in meters. */
+    private static final double OFF_ROUTE_M = 50;
+
+    /** Distance from the leg under which the courier is back on the route, in meters. */
+    private static final double ON_ROUTE_M = 25;
+
+    /** Largest part of the accuracy radius added to {@link #OFF_ROUTE_M}, in meters. */
+    private static final float MAX_ACCURACY_ALLOWANCE_M = 30;
+
+    /** Fixes less accurate than this are ignored, in meters. */
+    private static final float MAX_ACCURACY_M = 100;
+
+    /** Consecutive off-route fixes needed before asking for a new route. */
+    private static final int CONFIRMATION_FIXES = 3;
+
+    /** Shortest time between two re-route requests. */
+    public static final long MIN_REROUTE_INTERVAL_MS = 60_000;
+
+    private final double[] x;
+    private final double[] y;
+    private final double originLat;
+    private final double originLng;
+    private final double cosLat;
+    private final int[] legFirstPoint;
+    private final int[] legLastPoint;
+    private final Map<Long, int[]> cells;
+
+    private int offRouteFixes;
+    private boolean offRoute;
+    private long lastRerouteMs = Long.MIN_VALUE;
+    private double lastDistance;
+
+    private OffRouteDetector(double[] x, double[] y, double originLat, double originLng, double cosLat,
+                             int[] legFirstPoint, int[] legLastPoint, Map<Long, int[]> cells) {
+        this.x = x;
+        this.y = y;
+        this.originLat = originLat;
+        this.originLng = originLng;
+        this.cosLat = cosLat;
+        this.legFirstPoint = legFirstPoint;
+        this.legLastPoint = legLastPoint;
+        this.cells = cells;
+    }
+
+    /**
+     * Builds a detector and its grid index for a route geometry.
+     *
+     * @param lats          latitudes of the route points, in degrees
+     * @param lngs          longitudes of the route points, in degrees
+     * @param count         number of points to use from the arrays
+     * @param legPointStart index of the first point of each leg, followed by {@code count}
+     * @return a new detector, considering the courier on the route
+     */
+    public static OffRouteDetector fromGeometry(double[] lats, double[] lngs, int count, int[] legPointStart) {
+        int legs = legPointStart.length - 1;
+        int[] first = new int[Math.max(legs, 0)];
+        int[] last = new int[Math.max(legs, 0)];
+        for (int i = 0; i < legs; i++) {
+            first[i] = Math.max(legPointStart[i] - 1, 0);
+            last[i] = Math.max(Math.min(legPointStart[i + 1] - 1, count - 1), first[i]);
+        }
+
+        // Local projection in meters around the first point
+        double originLat = count > 0 ? lats[0] : 0;
+        double originLng = count > 0 ? lngs[0] : 0;
+        double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        double cosLat = Math.cos(Math.toRadians(originLat));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (lngs[i] - originLng) * metersPerDegree * cosLat;
+            y[i] = (lats[i] - originLat) * metersPerDegree;
+        }
+
+        // Each cell lists the segments whose bounding box overlaps it; slot 0 is the size
+        Map<Long, int[]> cells = new HashMap<>();
+        for (int i = 0; i + 1 < count; i++) {
+            int minX = cell(Math.min(x[i], x[i + 1]));
+            int maxX = cell(Math.max(x[i], x[i + 1]));
+            int minY = cell(Math.min(y[i], y[i + 1]));
+            int maxY = cell(Math.max(y[i], y[i + 1]));
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cy = minY; cy <= maxY; cy++) {
+                    Long key = key(cx, cy);
+                    int[] segments = cells.get(key);
+                    if (segments == null) {
+                        segments = new int[5];
+                    } else if (segments[0] + 1 == segments.length) {
+                        segments = Arrays.copyOf(segments, segments.length * 2);
+                    }
+                    segments[++segments[0]] = i;
+                    cells.put(key, segments);
+                }
+            }
+        }
+        return new OffRouteDetector(x, y, originLat, originLng, cosLat, first, last, cells);
+    }
+
+    /**
+     * Feeds a location fix and tells whether a new route should be requested now.
+     *
+     * @param lat       latitude of the fix, in degrees
+     * @param lng       longitude of the fix, in degrees
+     * @param accuracyM accuracy radius of the fix in meters, or 0 if unknown
+     * @param timeMs    time of the fix, in milliseconds on a monotonic clock
+     * @param leg       the leg being driven, as given by {@link RouteState#getCurrentLeg()}
+     * @return {@code true} once per confirmed deviation, at most every {@link #MIN_REROUTE_INTERVAL_MS}
+     */
+    public boolean onLocation(double lat, double lng, float accuracyM, long timeMs, int leg) {
+        if (leg < 0 || leg >= legFirstPoint.length || accuracyM > MAX_ACCURACY_M) return false;
+
+        lastDistance = distanceToLeg(lat, lng, leg);
+        double threshold = OFF_ROUTE_M + Math.min(accuracyM, MAX_ACCURACY_ALLOWANCE_M);
+        if (lastDistance > threshold) {
+            if (++offRouteFixes >= CONFIRMATION_FIXES) {
+                offRoute = true;
+            }
+        } else if (lastDistance < ON_ROUTE_M) {
+            offRouteFixes = 0;
+            offRoute = false;
+        }
+
+        if (offRoute && (lastRerouteMs == Long.MIN_VALUE || timeMs - lastRerouteMs >= MIN_REROUTE_INTERVAL_MS)) {
+            lastRerouteMs = timeMs;
+            offRouteFixes = 0;
+            offRoute = false;
+            return true;
+        }
+        return false;
+    }
+
+    /** @return {@code true} while the deviation is confirmed but no re-route was requested yet */
+    public boolean isOffRoute() {
+        return offRoute;
+    }
+
+    /**
+     * @return the distance of the last fix to the current leg, in meters, or
+     *         {@code +Infinity} if it was farther than one grid cell
+     */
+    public double getLastDistance() {
+        return lastDistance;
+    }
+
+    /**
+     * Returns the distance from a point to the nearest segment of a leg, looking only at
+     * the grid cells around the point.
+     *
+     * @return the distance in meters, or {@code +Infinity} if no segment of the leg is near
+     */
+    double distanceToLeg(double lat, double lng, int leg) {
+        double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        double px = (lng - originLng) * metersPerDegree * cosLat;
+        double py = (lat - originLat) * metersPerDegree;
+        int first = legFirstPoint[leg];
+        int last = legLastPoint[leg];
+        if (first == last) {
+            return Math.hypot(px - x[first], py - y[first]);
+        }
+
+        int cx = cell(px);
+        int cy = cell(py);
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = cx - 1; i <= cx + 1; i++) {
+            for (int j = cy - 1; j <= cy + 1; j++) {
+                int[] segments = cells.get(key(i, j));
+                if (segments == null) continue;
+                for (int k = 1; k <= segments[0]; k++) {
+                    int s = segments[k];
+                    if (s < first || s >= last) continue;
+                    best = Math.min(best, distanceToSegment(px, py, s));
+                }
+            }
+        }
+        return best;
+    }
+
+    private double distanceToSegment(double px, double py, int s) {
+        double dx = x[s + 1] - x[s];
+        double dy = y[s + 1] - y[s];
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq > 0 ? Math.max(0, Math.min(1, ((px - x[s]) * dx + (py - y[s]) * dy) / lengthSq)) : 0;
+        return Math.hypot(px - (x[s] + t * dx), py - (y[s] + t * dy));
+    }
+
+    private static int cell(double meters) {
+        return (int) Math.floor(meters / CELL_SIZE_M);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -0,0 +1,132 @@
+package route;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification computed once for every tolerance.
+ * <p>
+ * {@link #importance} runs the recursive split of Douglas-Peucker to the end and
+ * records, for each point, the largest tolerance at which it would still be kept: its
+ * distance to the chord when it was chosen, capped by the importance of the points
+ * that split its parent ranges. Simplifying at tolerance {@code t} is then a plain
+ * filter ({@link #select}), which gives exactly the points Douglas-Peucker keeps at
+ * {@code t}; several levels of detail cost one pass plus one filter each.
+ * </p>
+ * <p>
+ * Distances are measured on a local equirectangular projection, which is accurate to
+ * well under a percent at the scale of a delivery tour.
+ * </p>
+ */
+public final class PolylineSimplifier {
+
+    private PolylineSimplifier() { }
+
+    /**
+     * Computes the Douglas-Peucker importance of each point of a polyline.
+     *
+     * @param lats         latitudes, in degrees
+     * @param lngs         longitudes, in degrees
+     * @param count        number of points to use from the arrays
+     * @param minTolerance smallest tolerance that will be selected, in meters; ranges whose
+     *                     points all lie closer than this to their chord are not split further
+     * @return the importance of each point, in meters ({@code +Infinity} for both ends)
+     */
+    public static double[] importance(double[] lats, double[] lngs, int count, double minTolerance) {
+        double[] importance = new double[count];
+        if (count == 0) return importance;
+        importance[0] = Double.POSITIVE_INFINITY;
+        importance[count - 1] = Double.POSITIVE_INFINITY;
+        if (count < 3) return importance;
+
+        // Local projection in meters around the first point
+        double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        double cosLat = Math.cos(Math.toRadians(lats[0]));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (lngs[i] - lngs[0]) * metersPerDegree * cosLat;
+            y[i] = (lats[i] - lats[0]) * metersPerDegree;
+        }
+
+        // Explicit stack of (first, last, parent importance) to avoid deep recursion
+        int[] firsts = new int[64];
+        int[] lasts = new int[64];
+        double[] parents = new double[64];
+        int top = 0;
+        firsts[0] = 0;
+        lasts[0] = count - 1;
+        parents[0] = Double.POSITIVE_INFINITY;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int first = firsts[top];
+            int last = lasts[top];
+            double parent = parents[top];
+
+            int farthest = -1;
+            double maxDistance = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0 || maxDistance < minTolerance) continue;
+
+            double value = Math.min(maxDistance, parent);
+            importance[farthest] = value;
+
+            if (top + 2 > firsts.length) {
+                firsts = Arrays.copyOf(firsts, firsts.length * 2);
+                lasts = Arrays.copyOf(lasts, lasts.length * 2);
+                parents = Arrays.copyOf(parents, parents.length * 2);
+            }
+            if (farthest - first > 1) {
+                firsts[top] = first;
+                lasts[top] = farthest;
+                parents[top] = value;
+                top++;
+            }
+            if (last - farthest > 1) {
+                firsts[top] = farthest;
+                lasts[top] = last;
+                parents[top] = value;
+                top++;
+            }
+        }
+        return importance;
+    }
+
+    /**
+     * Returns the indices of the points kept at the given tolerance, in order.
+     *
+     * @param importance the result of {@link #importance}
+     * @param from       index of the first point to consider (always kept)
+     * @param tolerance  the tolerance, in meters
+     * @return the indices of the kept points
+     */
+    public static int[] select(double[] importance, int from, double tolerance) {
+        int[] kept = new int[Math.max(importance.length - from, 0)];
+        int count = 0;
+        for (int i = from; i < importance.length; i++) {
+            if (i == from || importance[i] > tolerance) {
+                kept[count++] = i;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /** Distance from point p to the segment [a, b]. */
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
@@ -0,0 +1,250 @@
+package route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-device stop sequencing for an open tour with fixed start and end.
+ * <p>
+ * Builds a first tour with the nearest-neighbour heuristic, then improves it with
+ * 2-opt (segment reversal) and Or-opt (moving chains of 1 to 3 stops) until no move
+ * improves the tour or the time budget is spent. For the tour sizes of a courier
+ * (up to a few hundred stops) this converges in a few milliseconds and needs no
+ * network, unlike the {@code optimize:true} option of the Directions API.
+ * </p>
+ * <p>
+ * Both moves reverse part of the tour. With an asymmetric {@link DistanceMatrix}, the
+ * cost of driving the reversed part in the other direction is added to the gain of the
+ * move, so a move is only made when it really shortens the tour.
+ * </p>
+ */
+public class RouteOptimizer {
+
+    /** Time budget used by the no-arg constructor. */
+    public static final long DEFAULT_TIME_BUDGET_MS = 50;
+
+    private static final double EPSILON = 1e-9;
+    private static final int MAX_CHAIN_LENGTH = 3;
+
+    private final long timeBudgetNanos;
+
+    /** Creates an optimizer with the {@link #DEFAULT_TIME_BUDGET_MS default} time budget. */
+    public RouteOptimizer() {
+        this(DEFAULT_TIME_BUDGET_MS);
+    }
+
+    /**
+     * Creates an optimizer with a custom time budget for the improvement phase.
+     *
+     * @param timeBudgetMs maximum time spent improving a tour, in milliseconds
+     */
+    public RouteOptimizer(long timeBudgetMs) {
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000L;
+    }
+
+    /**
+     * Computes the visiting order of stops given by their coordinates, using a
+     * haversine {@link DistanceMatrix}.
+     *
+     * @param originLat latitude of the starting point
+     * @param originLng longitude of the starting point
+     * @param destLat   latitude of the final destination
+     * @param destLng   longitude of the final destination
+     * @param stopLats  latitudes of the stops
+     * @param stopLngs  longitudes of the stops
+     * @return the waypoint order: indices into the stop arrays, in visiting order
+     */
+    public List<Integer> optimize(double originLat, double originLng, double destLat, double destLng,
+                                  double[] stopLats, double[] stopLngs) {
+        DistanceMatrix matrix = DistanceMatrix.haversine(originLat, originLng, destLat, destLng, stopLats, stopLngs);
+        int[] order = optimize(matrix);
+        List<Integer> waypointOrder = new ArrayList<>(order.length);
+        for (int node : order) {
+            waypointOrder.add(node - 1);
+        }
+        return waypointOrder;
+    }
+
+    /**
+     * Computes the visiting order of the stops of a matrix.
+     *
+     * @param matrix the cost matrix (node 0 = origin, last node = destination)
+     * @return the stop nodes ({@code 1..n}) in visiting order
+     */
+    public int[] optimize(DistanceMatrix matrix) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int[] path = nearestNeighbour(matrix);
+        improve(matrix, path, deadline);
+
+        int[] order = new int[path.length - 2];
+        System.arraycopy(path, 1, order, 0, order.length);
+        return order;
+    }
+
+    /**
+     * Improves an existing visiting order, e.g. after a stop has been removed.
+     *
+     * @param matrix the cost matrix (node 0 = origin, last node = destination)
+     * @param order  the stop nodes ({@code 1..n}) in their current visiting order
+     * @return the improved order
+     */
+    public int[] reoptimize(DistanceMatrix matrix, int[] order) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int[] path = new int[order.length + 2];
+        path[0] = 0;
+        System.arraycopy(order, 0, path, 1, order.length);
+        path[path.length - 1] = matrix.size() - 1;
+        improve(matrix, path, deadline);
+
+        int[] improved = new int[order.length];
+        System.arraycopy(path, 1, improved, 0, improved.length);
+        return improved;
+    }
+
+    /**
+     * Returns the total cost of a path.
+     *
+     * @param matrix the cost matrix
+     * @param path   the nodes of the path, including origin and destination
+     * @return the sum of the costs of consecutive nodes
+     */
+    public static double pathCost(DistanceMatrix matrix, int[] path) {
+        double cost = 0;
+        for (int i = 0; i + 1 < path.length; i++) {
+            cost += matrix.cost(path[i], path[i + 1]);
+        }
+        return cost;
+    }
+
+    private static int[] nearestNeighbour(DistanceMatrix matrix) {
+        int size = matrix.size();
+        int[] path = new int[size];
+        boolean[] visited = new boolean[size];
+        path[0] = 0;
+        path[size - 1] = size - 1;
+        visited[0] = true;
+
+        int current = 0;
+        for (int pos = 1; pos < size - 1; pos++) {
+            int best = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int candidate = 1; candidate < size - 1; candidate++) {
+                if (visited[candidate]) continue;
+                double c = matrix.cost(current, candidate);
+                if (c < bestCost) {
+                    bestCost = c;
+                    best = candidate;
+                }
+            }
+            path[pos] = best;
+            visited[best] = true;
+            current = best;
+        }
+        return path;
+    }
+
+    private static void improve(DistanceMatrix matrix, int[] path, long deadline) {
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = twoOpt(matrix, path, deadline);
+            improved |= orOpt(matrix, path, deadline);
+        }
+    }
+
+    /**
+     * Reverses path[i..j] whenever it shortens the path (first improvement).
+     */
+    private static boolean twoOpt(DistanceMatrix m, int[] path, long deadline) {
+        boolean improved = false;
+        boolean symmetric = m.isSymmetric();
+        int last = path.length - 1;
+        for (int i = 1; i < last - 1; i++) {
+            if (System.nanoTime() >= deadline) return improved;
+            // Extra cost of driving path[i..j] backwards, kept up to date as j grows
+            double reversal = 0;
+            for (int j = i + 1; j < last; j++) {
+                if (!symmetric) {
+                    reversal += m.cost(path[j], path[j - 1]) - m.cost(path[j - 1], path[j]);
+                }
+                double delta = m.cost(path[i - 1], path[j]) + m.cost(path[i], path[j + 1])
+                        - m.cost(path[i - 1], path[i]) - m.cost(path[j], path[j + 1]) + reversal;
+                if (delta < -EPSILON) {
+                    reverse(path, i, j);
+                    reversal = -reversal;
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves chains of 1 to {@link #MAX_CHAIN_LENGTH} consecutive stops to a better
+     * position, possibly reversed.
+     */
+    private static boolean orOpt(DistanceMatrix m, int[] path, long deadline) {
+        boolean improved = false;
+        int last = path.length - 1;
+        for (int len = 1; len <= MAX_CHAIN_LENGTH; len++) {
+            for (int i = 1; i + len - 1 < last; i++) {
+                if (System.nanoTime() >= deadline) return improved;
+                int j = i + len - 1;
+                int prev = path[i - 1];
+                int next = path[j + 1];
+                int first = path[i];
+                int end = path[j];
+                double removeGain = m.cost(prev, first) + m.cost(end, next) - m.cost(prev, next);
+                double reversal = 0;
+                if (!m.isSymmetric()) {
+                    for (int c = i; c < j; c++) {
+                        reversal += m.cost(path[c + 1], path[c]) - m.cost(path[c], path[c + 1]);
+                    }
+                }
+
+                for (int k = 0; k < last; k++) {
+                    if (k >= i - 1 && k <= j) continue;
+                    int a = path[k];
+                    int b = path[k + 1];
+                    double base = m.cost(a, b);
+                    double forward = m.cost(a, first) + m.cost(end, b) - base;
+                    double backward = m.cost(a, end) + m.cost(first, b) - base + reversal;
+                    boolean reversed = backward < forward;
+                    if (Math.min(forward, backward) - removeGain < -EPSILON) {
+                        moveChain(path, i, j, k, reversed);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves path[i..j] between path[k] and path[k + 1] (k outside [i - 1, j]).
+     */
+    private static void moveChain(int[] path, int i, int j, int k, boolean reversed) {
+        int len = j - i + 1;
+        int[] chain = new int[len];
+        for (int c = 0; c < len; c++) {
+            chain[c] = reversed ? path[j - c] : path[i + c];
+        }
+        if (k < i) {
+            // shift path[k+1 .. i-1] right by len
+            System.arraycopy(path, k + 1, path, k + 1 + len, i - k - 1);
+            System.arraycopy(chain, 0, path, k + 1, len);
+        } else {
+            // shift path[j+1 .. k] left by len
+            System.arraycopy(path, j + 1, path, i, k - j);
+            System.arraycopy(chain, 0, path, k - len + 1, len);
+        }
+    }
+
+    private static void reverse(int[] path, int i, int j) {
+        while (i < j) {
+            int tmp = path[i];
+            path[i++] = path[j];
+            path[j--] = tmp;
+        }
+    }
+}
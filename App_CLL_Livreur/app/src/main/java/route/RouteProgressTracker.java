@@ -0,0 +1,252 @@
+package route;
+
+/**
+ * Position of the courier along the legs of an already fetched route, and the distance
+ * and time left from it, computed on the device.
+ * <p>
+ * Each fix is map-matched onto the polyline of the current leg: it is projected on the
+ * nearest segment, first searched in a window after the previously matched segment and
+ * then, if nothing close enough is found there, over the whole leg. The distance driven
+ * along the leg is turned into a fraction of its length, which scales the distance the
+ * Directions API gave for that leg; the remaining time follows from the leg's average
+ * speed ({@code distance / duration}). Between two fixes, {@link #refresh} extrapolates
+ * along the leg with the speed of the last fix, for at most {@link #MAX_EXTRAPOLATION_MS}.
+ * </p>
+ * <p>
+ * Leg {@code i} covers the points from {@code legPointStart[i] - 1} (the last point of
+ * the previous leg, shared and stored once) to {@code legPointStart[i + 1] - 1}; the
+ * first leg starts at point 0. Once built, instances are only used from the main
+ * thread.
+ * </p>
+ */
+public final class RouteProgressTracker {
+
+    /** Number of segments searched after the last matched one before a full leg scan. */
+    private static final int SEARCH_WINDOW = 24;
+
+    /** Distance from the polyline under which a match in the search window is accepted, in meters. */
+    private static final double WINDOW_MATCH_M = 40;
+
+    /** Longest time a position is extrapolated from the last fix. */
+    public static final long MAX_EXTRAPOLATION_MS = 10_000;
+
+    /** Speed under which the courier is considered stopped and nothing is extrapolated, in m/s. */
+    private static final float MIN_EXTRAPOLATION_SPEED_MPS = 1f;
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final double[] cumulative;
+    private final int[] legFirstPoint;
+    private final int[] legLastPoint;
+    private final int[] legDistances;
+    private final int[] legDurations;
+    private final long[] distanceAfter;
+    private final long[] durationAfter;
+
+    private int matchedLeg = -1;
+    private int matchedSegment;
+    private double alongLeg;
+    private double offRouteDistance;
+    private float fixSpeed;
+    private long fixTimeMs;
+
+    private long legRemainingDistance;
+    private long legRemainingDuration;
+    private long tourRemainingDistance;
+    private long tourRemainingDuration;
+
+    private RouteProgressTracker(double[] lats, double[] lngs, double[] cumulative,
+                                 int[] legFirstPoint, int[] legLastPoint,
+                                 int[] legDistances, int[] legDurations) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.cumulative = cumulative;
+        this.legFirstPoint = legFirstPoint;
+        this.legLastPoint = legLastPoint;
+        this.legDistances = legDistances;
+        this.legDurations = legDurations;
+
+        int legs = legDistances.length;
+        distanceAfter = new long[legs + 1];
+        durationAfter = new long[legs + 1];
+        for (int i = legs - 1; i >= 0; i--) {
+            distanceAfter[i] = distanceAfter[i + 1] + legDistances[i];
+            durationAfter[i] = durationAfter[i + 1] + legDurations[i];
+        }
+    }
+
+    /**
+     * Builds a tracker for a route geometry.
+     *
+     * @param lats          latitudes of the route points, in degrees
+     * @param lngs          longitudes of the route points, in degrees
+     * @param count         number of points to use from the arrays
+     * @param legPointStart index of the first point of each leg, followed by {@code count}
+     * @param legDistances  distance of each leg, in meters
+     * @param legDurations  duration of each leg, in seconds
+     * @return a new tracker with no fix yet
+     * @throws IllegalArgumentException if the leg arrays do not match
+     */
+    public static RouteProgressTracker fromGeometry(double[] lats, double[] lngs, int count, int[] legPointStart,
+                                                    int[] legDistances, int[] legDurations) {
+        int legs = legDistances.length;
+        if (legDurations.length != legs || legPointStart.length != legs + 1) {
+            throw new IllegalArgumentException("Leg arrays differ in length");
+        }
+
+        double[] cumulative = new double[count];
+        for (int i = 1; i < count; i++) {
+            cumulative[i] = cumulative[i - 1] + GeoMath.haversine(lats[i - 1], lngs[i - 1], lats[i], lngs[i]);
+        }
+
+        int[] first = new int[legs];
+        int[] last = new int[legs];
+        for (int i = 0; i < legs; i++) {
+            first[i] = Math.max(legPointStart[i] - 1, 0);
+            last[i] = Math.max(Math.min(legPointStart[i + 1] - 1, count - 1), first[i]);
+        }
+        return new RouteProgressTracker(lats, lngs, cumulative, first, last, legDistances, legDurations);
+    }
+
+    /** @return the number of legs of the route */
+    public int getLegCount() {
+        return legDistances.length;
+    }
+
+    /**
+     * Map-matches a location fix onto the given leg.
+     *
+     * @param lat      latitude of the fix, in degrees
+     * @param lng      longitude of the fix, in degrees
+     * @param speedMps speed of the fix in m/s, or 0 if unknown
+     * @param timeMs   time of the fix, on the clock later passed to {@link #refresh}
+     * @param leg      the leg being driven, as given by {@link RouteState#getCurrentLeg()}
+     */
+    public void onLocation(double lat, double lng, float speedMps, long timeMs, int leg) {
+        if (leg < 0 || leg >= legDistances.length) return;
+
+        int first = legFirstPoint[leg];
+        int last = legLastPoint[leg];
+        if (leg != matchedLeg) {
+            matchedLeg = leg;
+            matchedSegment = first;
+        }
+
+        int from = Math.max(first, matchedSegment - 1);
+        int to = Math.min(last, matchedSegment + SEARCH_WINDOW);
+        if (!match(lat, lng, from, to) || offRouteDistance > WINDOW_MATCH_M) {
+            match(lat, lng, first, last);
+        }
+        fixSpeed = speedMps;
+        fixTimeMs = timeMs;
+    }
+
+    /**
+     * Recomputes the remaining distances and durations from the last matched fix,
+     * extrapolated to {@code nowMs}.
+     *
+     * @param nowMs the current time, on the clock of the fixes
+     * @return {@code false} if there is no matched fix yet
+     */
+    public boolean refresh(long nowMs) {
+        int leg = matchedLeg;
+        if (leg < 0) return false;
+
+        double along = alongLeg;
+        if (fixSpeed >= MIN_EXTRAPOLATION_SPEED_MPS) {
+            long elapsed = Math.max(0, Math.min(nowMs - fixTimeMs, MAX_EXTRAPOLATION_MS));
+            along += fixSpeed * elapsed / 1000.0;
+        }
+
+        double length = cumulative[legLastPoint[leg]] - cumulative[legFirstPoint[leg]];
+        double fraction = length > 0 ? Math.min(along / length, 1) : 0;
+        double remaining = legDistances[leg] * (1 - fraction);
+        double speed = legDurations[leg] > 0 ? (double) legDistances[leg] / legDurations[leg] : 0;
+
+        legRemainingDistance = Math.round(remaining);
+        legRemainingDuration = speed > 0 ? Math.round(remaining / speed) : Math.round(legDurations[leg] * (1 - fraction));
+        tourRemainingDistance = legRemainingDistance + distanceAfter[leg + 1];
+        tourRemainingDuration = legRemainingDuration + durationAfter[leg + 1];
+        return true;
+    }
+
+    /** @return {@code true} once a fix has been matched */
+    public boolean hasFix() {
+        return matchedLeg >= 0;
+    }
+
+    /** @return the leg the last fix was matched on, or {@code -1} */
+    public int getMatchedLeg() {
+        return matchedLeg;
+    }
+
+    /** @return the distance between the last fix and its match on the polyline, in meters */
+    public double getOffRouteDistance() {
+        return offRouteDistance;
+    }
+
+    /** @return the distance to the next stop, in meters, as of the last {@link #refresh} */
+    public long getLegRemainingDistance() {
+        return legRemainingDistance;
+    }
+
+    /** @return the time to the next stop, in seconds, as of the last {@link #refresh} */
+    public long getLegRemainingDuration() {
+        return legRemainingDuration;
+    }
+
+    /** @return the distance to the end of the tour, in meters, as of the last {@link #refresh} */
+    public long getTourRemainingDistance() {
+        return tourRemainingDistance;
+    }
+
+    /** @return the time to the end of the tour, in seconds, as of the last {@link #refresh} */
+    public long getTourRemainingDuration() {
+        return tourRemainingDuration;
+    }
+
+    /**
+     * Projects the fix on the segments starting at points {@code from} to {@code to - 1}
+     * and keeps the nearest one.
+     *
+     * @return {@code false} if the range holds no segment
+     */
+    private boolean match(double lat, double lng, int from, int to) {
+        if (to <= from) {
+            int point = Math.max(from, 0);
+            matchedSegment = point;
+            alongLeg = 0;
+            offRouteDistance = GeoMath.haversine(lat, lng, lats[point], lngs[point]);
+            return to == from;
+        }
+
+        // Local projection in meters around the fix
+        double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        double cosLat = Math.cos(Math.toRadians(lat));
+        double best = Double.POSITIVE_INFINITY;
+        int bestSegment = from;
+        double bestT = 0;
+        for (int i = from; i < to; i++) {
+            double ax = (lngs[i] - lng) * metersPerDegree * cosLat;
+            double ay = (lats[i] - lat) * metersPerDegree;
+            double dx = (lngs[i + 1] - lngs[i]) * metersPerDegree * cosLat;
+            double dy = (lats[i + 1] - lats[i]) * metersPerDegree;
+            double lengthSq = dx * dx + dy * dy;
+            double t = lengthSq > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSq)) : 0;
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            double distanceSq = px * px + py * py;
+            if (distanceSq < best) {
+                best = distanceSq;
+                bestSegment = i;
+                bestT = t;
+            }
+        }
+
+        matchedSegment = bestSegment;
+        offRouteDistance = Math.sqrt(best);
+        double segment = cumulative[bestSegment + 1] - cumulative[bestSegment];
+        alongLeg = cumulative[bestSegment] - cumulative[legFirstPoint[matchedLeg]] + bestT * segment;
+        return true;
+    }
+}
@@ -0,0 +1,216 @@
+package route;
+
+import java.util.Arrays;
+
+/**
+ * Progress of the courier along a fetched route, kept as a sequence of legs.
+ * <p>
+ * Leg {@code i} goes from node {@code i} to node {@code i + 1}, where node 0 is the
+ * origin, nodes 1 to n are the stops in visiting order and node n + 1 is the final
+ * destination. Distances and durations are stored as prefix sums, so completing a
+ * stop and reading the remaining totals are O(1) and need no network call: the route
+ * only has to be fetched again when the visiting order changes.
+ * </p>
+ * <p>
+ * A stop may also be completed out of order ({@link #completeOutOfOrder}); the stops
+ * left are then visited in a new order, which {@link #reorderRemaining} can refine, and
+ * the legs keep the values of the previous order until a route for the new order is fetched.
+ * </p>
+ * <p>
+ * An instance is built, and advanced past the stops already completed, on a single
+ * background thread before it is published (e.g. through a volatile field); after that it
+ * is only read and advanced from the main thread. It is not thread-safe.
+ * </p>
+ */
+public final class RouteState {
+
+    private final int[] stopOrder;
+    /** Visiting position of each stop index, or -1 for the indices that are not on the route. */
+    private final int[] positions;
+    private final long[] distancePrefix;
+    private final long[] durationPrefix;
+    private int completedStops;
+
+    private RouteState(int[] stopOrder, long[] distancePrefix, long[] durationPrefix) {
+        this.stopOrder = stopOrder;
+        int maxIndex = -1;
+        for (int stop : stopOrder) {
+            maxIndex = Math.max(maxIndex, stop);
+        }
+        this.positions = new int[maxIndex + 1];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < stopOrder.length; i++) {
+            positions[stopOrder[i]] = i;
+        }
+        this.distancePrefix = distancePrefix;
+        this.durationPrefix = durationPrefix;
+    }
+
+    /**
+     * Builds the state of a route that has not been started yet.
+     *
+     * @param legDistances distance of each leg, in meters, in driving order
+     * @param legDurations duration of each leg, in seconds, in driving order
+     * @param stopOrder    the visiting order, as indices into the caller's stop list
+     * @return a new {@link RouteState} positioned on the first stop
+     * @throws IllegalArgumentException if the leg arrays do not have the same length
+     */
+    public static RouteState fromLegs(int[] legDistances, int[] legDurations, int[] stopOrder) {
+        if (legDistances.length != legDurations.length) {
+            throw new IllegalArgumentException("legDistances and legDurations differ in length");
+        }
+        long[] distancePrefix = new long[legDistances.length + 1];
+        long[] durationPrefix = new long[legDurations.length + 1];
+        for (int i = 0; i < legDistances.length; i++) {
+            distancePrefix[i + 1] = distancePrefix[i] + legDistances[i];
+            durationPrefix[i + 1] = durationPrefix[i] + legDurations[i];
+        }
+        return new RouteState(stopOrder.clone(), distancePrefix, durationPrefix);
+    }
+
+    /** @return the number of stops of the route */
+    public int getStopCount() {
+        return stopOrder.length;
+    }
+
+    /** @return the number of stops already delivered or marked absent */
+    public int getCompletedStops() {
+        return completedStops;
+    }
+
+    /** @return the number of stops left to visit */
+    public int getRemainingStops() {
+        return stopOrder.length - completedStops;
+    }
+
+    /** @return {@code true} once every stop has been completed */
+    public boolean isFinished() {
+        return completedStops >= stopOrder.length;
+    }
+
+    /**
+     * Returns the index, in the caller's stop list, of the stop to visit next.
+     *
+     * @return the current stop index, or {@code -1} if the route is finished
+     */
+    public int getCurrentStop() {
+        return isFinished() ? -1 : stopOrder[completedStops];
+    }
+
+    /**
+     * Returns the stop visited at the given position.
+     *
+     * @param position a position in the visiting order
+     * @return the index of the stop in the caller's stop list
+     */
+    public int getStop(int position) {
+        return stopOrder[position];
+    }
+
+    /**
+     * Returns the visiting position of the given stop.
+     *
+     * @param stopIndex an index into the caller's stop list
+     * @return its position in the visiting order, or {@code -1} if it is not on the route
+     */
+    public int positionOf(int stopIndex) {
+        return stopIndex >= 0 && stopIndex < positions.length ? positions[stopIndex] : -1;
+    }
+
+    /** @return the index of the leg currently being driven */
+    public int getCurrentLeg() {
+        return Math.min(completedStops, distancePrefix.length - 2);
+    }
+
+    /** @return the distance of the current leg, in meters */
+    public long getCurrentLegDistance() {
+        int leg = getCurrentLeg();
+        return leg < 0 ? 0 : distancePrefix[leg + 1] - distancePrefix[leg];
+    }
+
+    /** @return the duration of the current leg, in seconds */
+    public long getCurrentLegDuration() {
+        int leg = getCurrentLeg();
+        return leg < 0 ? 0 : durationPrefix[leg + 1] - durationPrefix[leg];
+    }
+
+    /** @return the distance from the start of the current leg to the end of the route, in meters */
+    public long getRemainingDistance() {
+        int leg = Math.max(getCurrentLeg(), 0);
+        return distancePrefix[distancePrefix.length - 1] - distancePrefix[leg];
+    }
+
+    /** @return the duration from the start of the current leg to the end of the route, in seconds */
+    public long getRemainingDuration() {
+        int leg = Math.max(getCurrentLeg(), 0);
+        return durationPrefix[durationPrefix.length - 1] - durationPrefix[leg];
+    }
+
+    /**
+     * Marks the current stop as done and moves on to the next leg.
+     *
+     * @return {@code false} if the route was already finished
+     */
+    public boolean completeStop() {
+        if (isFinished()) return false;
+        completedStops++;
+        return true;
+    }
+
+    /**
+     * Completes a stop that is not the current one, e.g. a neighbour delivered on the way,
+     * and sets the visiting order of the stops left.
+     *
+     * @param stopIndex      the index of the completed stop, which must not be completed yet
+     * @param remainingOrder the stops left after it, in their new visiting order
+     * @throws IllegalArgumentException if the stop is already completed or the new order
+     *                                  does not contain exactly the stops left
+     */
+    public void completeOutOfOrder(int stopIndex, int[] remainingOrder) {
+        int position = positionOf(stopIndex);
+        if (position < completedStops) {
+            throw new IllegalArgumentException("stop " + stopIndex + " is not left to visit");
+        }
+        if (remainingOrder.length != getRemainingStops() - 1) {
+            throw new IllegalArgumentException("remainingOrder does not match the stops left");
+        }
+        for (int stop : remainingOrder) {
+            int p = positionOf(stop);
+            if (p < completedStops || stop == stopIndex) {
+                throw new IllegalArgumentException("stop " + stop + " is not left to visit");
+            }
+        }
+
+        stopOrder[completedStops] = stopIndex;
+        System.arraycopy(remainingOrder, 0, stopOrder, completedStops + 1, remainingOrder.length);
+        for (int i = completedStops; i < stopOrder.length; i++) {
+            positions[stopOrder[i]] = i;
+        }
+        completedStops++;
+    }
+
+    /**
+     * Sets a new visiting order for the stops left, e.g. once they have been re-sequenced
+     * after an out-of-order delivery. The legs keep the values of the previous order.
+     *
+     * @param remainingOrder the stops left, in their new visiting order
+     * @throws IllegalArgumentException if the new order does not contain exactly the stops left
+     */
+    public void reorderRemaining(int[] remainingOrder) {
+        if (remainingOrder.length != getRemainingStops()) {
+            throw new IllegalArgumentException("remainingOrder does not match the stops left");
+        }
+        boolean[] seen = new boolean[positions.length];
+        for (int stop : remainingOrder) {
+            if (positionOf(stop) < completedStops || seen[stop]) {
+                throw new IllegalArgumentException("stop " + stop + " is not left to visit");
+            }
+            seen[stop] = true;
+        }
+
+        System.arraycopy(remainingOrder, 0, stopOrder, completedStops, remainingOrder.length);
+        for (int i = completedStops; i < stopOrder.length; i++) {
+            positions[stopOrder[i]] = i;
+        }
+    }
+}
@@ -6,22 +6,54 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.app_cll_livreur.R;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import data.model.Colis;
 
 /**
  * RecyclerView.Adapter implementation for displaying a list of {@link Colis} items.
+ * <p>
+ * New lists are compared with the displayed one by an {@link AsyncListDiffer}, on a
+ * background thread, and only the rows that changed are updated: packages are matched
+ * by number (also used as stable ID), and a change of status alone rebinds the status
+ * of the row, not the whole row.
+ * </p>
  */
 public class ColisAdapter extends RecyclerView.Adapter<ColisAdapter.ColisViewHolder> {
 
-    /** Internal list of packages to display. */
-    private final List<Colis> colisList;
+    /** Payload of a change that only affects the status of a package. */
+    private static final Object PAYLOAD_STATUS = new Object();
+
+    /** Opacity of the rows of delivered packages and absent clients. */
+    private static final float DONE_ALPHA = 0.5f;
+
+    private static final DiffUtil.ItemCallback<Colis> DIFF_CALLBACK = new DiffUtil.ItemCallback<Colis>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Colis oldItem, @NonNull Colis newItem) {
+            return oldItem.getNumber() == newItem.getNumber();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Colis oldItem, @NonNull Colis newItem) {
+            return sameDetails(oldItem, newItem) && oldItem.getStatus() == newItem.getStatus();
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull Colis oldItem, @NonNull Colis newItem) {
+            return sameDetails(oldItem, newItem) ? PAYLOAD_STATUS : null;
+        }
+    };
+
+    private final AsyncListDiffer<Colis> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
 
     /**
      * Constructs a new ColisAdapter with the given initial list.
@@ -29,18 +61,21 @@ public class ColisAdapter extends RecyclerView.Adapter<ColisAdapter.ColisViewHol
      * @param colisList the initial list of {@link Colis} items; may be null
      */
     public ColisAdapter(List<Colis> colisList) {
-        this.colisList = (colisList != null) ? new ArrayList<>(colisList) : new ArrayList<>();
+        setHasStableIds(true);
+        if (colisList != null) {
+            differ.submitList(colisList);
+        }
     }
 
     /**
-     * Replaces the current list of packages with a new list and refreshes the view.
+     * Replaces the current list of packages with a new list. The differences are
+     * computed in the background, then only the changed rows are updated.
      *
-     * @param newColisList the new list of {@link Colis} items to display
+     * @param newColisList the new list of {@link Colis} items to display; it must not
+     *                     be modified afterwards
      */
     public void setColisList(List<Colis> newColisList) {
-        colisList.clear();
-        colisList.addAll(newColisList);
-        notifyDataSetChanged();
+        differ.submitList(newColisList);
     }
 
     /**
@@ -66,20 +101,48 @@ public class ColisAdapter extends RecyclerView.Adapter<ColisAdapter.ColisViewHol
      */
     @Override
     public void onBindViewHolder(@NonNull ColisViewHolder holder, int position) {
-        Colis colis = colisList.get(position);
+        Colis colis = differ.getCurrentList().get(position);
         holder.name.setText(colis.getName());
         holder.address.setText(colis.getAdresse());
         holder.number.setText("N°" + colis.getNumber());
+        bindStatus(holder, colis);
+    }
+
+    /**
+     * Rebinds only the status of the row when every payload is a status change.
+     *
+     * @param holder   the holder to bind data into
+     * @param position the position of the item in the adapter's list
+     * @param payloads the payloads of the pending changes, empty for a full bind
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ColisViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !onlyStatus(payloads)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        bindStatus(holder, differ.getCurrentList().get(position));
     }
 
     /**
      * Returns the total number of {@link Colis} items in the adapter.
      *
-     * @return the size of the internal colis list
+     * @return the size of the displayed list
      */
     @Override
     public int getItemCount() {
-        return colisList.size();
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * Returns the package number, which identifies a row across list updates.
+     *
+     * @param position the position of the item in the adapter's list
+     * @return the number of the {@link Colis} at that position
+     */
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getNumber();
     }
 
     /**
@@ -103,9 +166,27 @@ public class ColisAdapter extends RecyclerView.Adapter<ColisAdapter.ColisViewHol
      * Returns the {@link Colis} at the specified position.
      *
      * @param position the index of the desired item
-     * @return the Colis object at the given position
+     * @return the Colis object at the given position, or {@code null} if out of range
      */
     public Colis getColisAt(int position) {
-        return colisList.get(position);
+        List<Colis> current = differ.getCurrentList();
+        return (position >= 0 && position < current.size()) ? current.get(position) : null;
+    }
+
+    private static void bindStatus(ColisViewHolder holder, Colis colis) {
+        boolean done = colis.getStatus() == 2 || colis.getStatus() == 3;
+        holder.itemView.setAlpha(done ? DONE_ALPHA : 1f);
+    }
+
+    private static boolean onlyStatus(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_STATUS) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameDetails(Colis oldItem, Colis newItem) {
+        return Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getAdresse(), newItem.getAdresse());
     }
 }
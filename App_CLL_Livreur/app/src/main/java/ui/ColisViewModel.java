@@ -1,28 +1,53 @@
 package ui;
 
-import android.util.Log;
+import android.app.Application;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-import data.api.amazi.AmaziServices;
 import data.model.Colis;
-import utils.TokenHolder;
+import data.tour.TourRepository;
+import data.tour.TourSnapshot;
+import data.tour.TourSession;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * ViewModel that manages the list of delivery packages (Colis) and the current
- * delivery ID. It provides LiveData for observing the full and filtered lists,
- * and interacts with AmaziServices to retrieve the delivery ID.
+ * ViewModel that manages the list of delivery packages (Colis).
+ * <p>
+ * The packages are kept in a {@link TourRepository}, indexed by number and grouped by
+ * status, so adding, removing and changing the status of a package never scans the
+ * list, and the methods of this class can be called from any thread. It provides
+ * LiveData for observing the full list and the list filtered by status; a filter is
+ * a lookup of the matching status bucket.
+ * </p>
+ * <p>
+ * The repository belongs to the {@link TourSession}, so every activity sees the same
+ * tour; the session writes each change to the local store and restores the saved tour
+ * after the process was killed.
+ * </p>
  */
-public class ColisViewModel extends ViewModel {
+public class ColisViewModel extends AndroidViewModel {
 
-    private final MutableLiveData<List<Colis>> colisLiveData = new MutableLiveData<>(new ArrayList<>());
-    private final MutableLiveData<List<Colis>> filteredColisLiveData = new MutableLiveData<>();
-    //private int LivraisonId;
+    /** Filter value that keeps every package. */
+    private static final int ALL = Integer.MIN_VALUE;
+
+    private final TourRepository repository;
+    private final MediatorLiveData<List<Colis>> colisLiveData = new MediatorLiveData<>();
+    private final MutableLiveData<Integer> filterLiveData = new MutableLiveData<>(ALL);
+    private final MediatorLiveData<List<Colis>> filteredColisLiveData = new MediatorLiveData<>();
+
+    public ColisViewModel(@NonNull Application application) {
+        super(application);
+        repository = TourSession.getInstance(application).getRepository();
+
+        colisLiveData.addSource(repository.getTour(), snapshot -> colisLiveData.setValue(snapshot.getColis()));
+        filteredColisLiveData.addSource(repository.getTour(), snapshot -> publishFiltered());
+        filteredColisLiveData.addSource(filterLiveData, status -> publishFiltered());
+    }
 
     /**
      * Returns a LiveData stream of the current list of packages.
@@ -33,13 +58,23 @@ public class ColisViewModel extends ViewModel {
         return colisLiveData;
     }
 
+    /**
+     * Returns the current state of the tour, including changes not delivered to the
+     * LiveData observers yet.
+     *
+     * @return the current {@link TourSnapshot}
+     */
+    public TourSnapshot getSnapshot() {
+        return repository.getSnapshot();
+    }
+
     /**
      * Replaces the entire list of packages with the given list.
      *
      * @param nouveauxColis the new list of {@link Colis} to set
      */
     public void setColis(List<Colis> nouveauxColis) {
-        colisLiveData.setValue(nouveauxColis);
+        repository.setAll(nouveauxColis);
     }
 
     /**
@@ -48,21 +83,7 @@ public class ColisViewModel extends ViewModel {
      * @param colis the {@link Colis} to add
      */
     public void addColis(Colis colis) {
-        List<Colis> currentList = colisLiveData.getValue();
-        if (currentList != null) {
-            boolean exists = false;
-            for (Colis c : currentList) {
-                if (c.getNumber() == colis.getNumber()) {
-                    exists = true;
-                    break;
-                }
-            }
-            if (!exists) {
-                currentList = new ArrayList<>(currentList);
-                currentList.add(colis);
-                colisLiveData.setValue(currentList);
-            }
-        }
+        repository.add(colis);
     }
 
     /**
@@ -71,19 +92,24 @@ public class ColisViewModel extends ViewModel {
      * @param colis the {@link Colis} to remove
      */
     public void removeColis(Colis colis) {
-        List<Colis> currentList = colisLiveData.getValue();
-        if (currentList != null && currentList.contains(colis)) {
-            currentList = new ArrayList<>(currentList);
-            currentList.remove(colis);
-            colisLiveData.setValue(currentList);
-        }
+        repository.remove(colis.getNumber());
+    }
+
+    /**
+     * Changes the delivery status of a package of the list.
+     *
+     * @param number the number of the package
+     * @param status the new status (1=Ongoing/2=Delivered/3=Absent)
+     */
+    public void updateStatus(int number, int status) {
+        repository.updateStatus(number, status);
     }
 
     /**
      * Clears all packages from the current list.
      */
     public void clearColis() {
-        colisLiveData.setValue(new ArrayList<>());
+        repository.clear();
     }
 
     /**
@@ -98,16 +124,14 @@ public class ColisViewModel extends ViewModel {
     /**
      * Filters the current list of packages by the given status and updates
      * the filtered list LiveData. If status equals "All" (case-insensitive),
-     * all packages are included.
+     * all packages are included. The filtered list then follows the changes
+     * of the tour.
      *
      * @param status the status to filter by ("All", "Ongoing", "Delivered", "Absent", etc.)
      */
     public void filterColis(String status) {
-        List<Colis> current = colisLiveData.getValue();
-        if (current == null) return;
-
         if (status != null && status.equalsIgnoreCase("All")) {
-            filteredColisLiveData.setValue(current);
+            filterLiveData.setValue(ALL);
             return;
         }
 
@@ -125,14 +149,14 @@ public class ColisViewModel extends ViewModel {
             default:
                 break;
         }
-
-        List<Colis> filtered = new ArrayList<>();
-        for (Colis c : current) {
-            if (c.getStatus() == currentStatus) {
-                filtered.add(c);
-            }
-        }
-        filteredColisLiveData.setValue(filtered);
+        filterLiveData.setValue(currentStatus);
     }
 
-}
\ No newline at end of file
+    private void publishFiltered() {
+        TourSnapshot snapshot = repository.getTour().getValue();
+        Integer status = filterLiveData.getValue();
+        if (snapshot == null || status == null) return;
+
+        filteredColisLiveData.setValue(status == ALL ? snapshot.getColis() : snapshot.getByStatus(status));
+    }
+}
@@ -0,0 +1,10 @@
+package ui;
+
+public class CourierIdHolder {
+    // TODO: Utiliser le vrai ID du livreur
+    private static final String COURIER_ID = "mail@mail.mail";
+
+    public static String getCourierId() {
+        return COURIER_ID;
+    }
+}
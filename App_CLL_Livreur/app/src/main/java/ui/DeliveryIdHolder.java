@@ -3,15 +3,13 @@ package ui;
 import android.util.Log;
 
 import data.api.amazi.AmaziServices;
-import utils.TokenHolder;
 
 public class DeliveryIdHolder {
     private static int deliveryId;
 
     public static void setDeliveryId() {
         Log.d("ColisVM", "🔔 setLivraisonId() appelé", new Throwable());
-        AmaziServices service = new AmaziServices(TokenHolder.getToken());
-        service.getLivraisonId(new AmaziServices.CallbackId() {
+        AmaziServices.getInstance().getLivraisonId(new AmaziServices.CallbackId() {
             @Override
             public void onSuccess(int id) {
                 deliveryId = id;
@@ -1,19 +1,32 @@
 package ui;
 
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-import com.example.app_cll_livreur.BuildConfig;
 import com.google.android.gms.maps.model.LatLng;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import data.api.maps.GoogleMapsServices;
-import data.model.DirectionsResponse;
+import data.model.CompactRoute;
+import data.tour.TourSession;
+import data.tour.TourStore;
+import route.DistanceMatrix;
+import route.OffRouteDetector;
+import route.RouteOptimizer;
+import route.RouteProgressTracker;
+import route.RouteState;
+import utils.RouteGeometry;
 
 
 /**
@@ -21,25 +34,104 @@ import data.model.DirectionsResponse;
  * <p>
  * Holds the list of waypoints for the route and exposes LiveData
  * for observing direction responses fetched from the Google Maps API.
+ * The visiting order of the stops is computed on the device by a
+ * {@link RouteOptimizer}, on a background thread.
+ * </p>
+ * <p>
+ * The progress along the fetched route is kept in a {@link RouteState}, which
+ * survives configuration changes; delivering a stop advances it locally, and the
+ * route is only fetched again when the set of stops changes. A {@link RouteProgressTracker}
+ * built from the same route matches the courier's position on its legs.
+ * </p>
+ * <p>
+ * Once a route is known, it is only fetched again on demand: {@link #onUserLocation}
+ * feeds each fix to an {@link OffRouteDetector}, and a confirmed deviation re-routes
+ * from the courier's position through the stops left, in the same order.
+ * </p>
+ * <p>
+ * A stop delivered out of order ({@link #completeStop}) is completed locally right away;
+ * the stops left are then re-sequenced on the routing thread from its position, and only
+ * then is the route for the new order fetched.
+ * </p>
+ * <p>
+ * Requests go through a {@link RouteRequestCoordinator}: bursts of waypoint changes
+ * are debounced into one request, a request identical to one in flight is dropped, a
+ * response for an outdated list of waypoints is discarded, and no request is made when
+ * a route for the current waypoints was already received.
+ * </p>
+ * <p>
+ * The geometry to draw is prepared on the routing thread as a {@link RouteGeometry}
+ * (decoded points at several levels of detail), so the main thread only receives
+ * ready-to-draw point sets.
+ * </p>
+ * <p>
+ * The applied route and the number of completed stops are kept in the {@link TourSession}.
+ * A new instance, in another activity or after the process was killed, reuses that route
+ * once the same waypoints are set again, so it is shown without fetching it.
  * </p>
  */
-public class MapViewModel extends ViewModel {
-    private final MutableLiveData<DirectionsResponse> routeLiveData = new MutableLiveData<>();
+public class MapViewModel extends AndroidViewModel {
+
+    /** Time budget of the local re-sequencing after an out-of-order delivery. */
+    private static final long RESEQUENCE_BUDGET_MS = 15;
+
+    private final MutableLiveData<CompactRoute> routeLiveData = new MutableLiveData<>();
+    private final MutableLiveData<RouteGeometry> geometryLiveData = new MutableLiveData<>();
+    private final ExecutorService routingExecutor = Executors.newSingleThreadExecutor();
+    private final RouteOptimizer routeOptimizer = new RouteOptimizer();
+    /** Re-sequences the stops left on the routing thread, after an out-of-order delivery. */
+    private final RouteOptimizer resequencer = new RouteOptimizer(RESEQUENCE_BUDGET_MS);
+    private final RouteRequestCoordinator requests = new RouteRequestCoordinator();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TourSession session;
     private List<LatLng> waypoints = new ArrayList<>();
+    private volatile RouteState routeState;
+    private volatile RouteProgressTracker progressTracker;
+    private volatile OffRouteDetector offRouteDetector;
+    private volatile LatLng routeDestination;
+    private volatile CompactRoute latestRoute;
+
+    // Confined to the main thread
+    private TourStore.SavedRoute savedRoute;
+    /** Incremented by each out-of-order delivery; only the latest re-sequencing is applied. */
+    private int resequenceCount;
+
+    // Confined to the routing thread
+    private CompactRoute simplifiedRoute;
+    private double[] pointImportance;
+
+    public MapViewModel(@NonNull Application application) {
+        super(application);
+        session = TourSession.getInstance(application);
+        session.whenLoaded(() -> {
+            savedRoute = session.getRoute();
+            restoreSavedRoute();
+        });
+    }
 
     /**
-     * Returns a LiveData stream of the latest {@link DirectionsResponse}.
+     * Returns a LiveData stream of the latest {@link CompactRoute}.
      * <p>
      * Observers are notified whenever a new set of directions is fetched
      * or when the route is cleared.
      * </p>
      *
-     * @return LiveData containing the current {@link DirectionsResponse}, or null if none
+     * @return LiveData containing the current {@link CompactRoute}, or null if none
      */
-    public LiveData<DirectionsResponse> getRouteLiveData() {
+    public LiveData<CompactRoute> getRouteLiveData() {
         return routeLiveData;
     }
 
+    /**
+     * Returns a LiveData stream of the geometry of the remaining route, prepared
+     * off the main thread each time a route is fetched or a stop is completed.
+     *
+     * @return LiveData containing the current {@link RouteGeometry}, or null if none
+     */
+    public LiveData<RouteGeometry> getRouteGeometry() {
+        return geometryLiveData;
+    }
+
     /**
      * Returns the current list of waypoints used for routing.
      *
@@ -51,48 +143,461 @@ public class MapViewModel extends ViewModel {
 
     /**
      * Updates the list of waypoints for the next routing request.
+     * <p>
+     * If the waypoints differ from the current ones, the current {@link RouteState}
+     * no longer matches them and is dropped, and responses to requests made for the
+     * previous waypoints will be ignored. The route stays on screen until the new
+     * one is received.
+     * </p>
      *
      * @param waypoints a {@link List} of {@link LatLng} to use as route waypoints
      */
     public void setWaypoints(List<LatLng> waypoints) {
+        if (!waypoints.equals(this.waypoints)) {
+            // Bumped first: a route of the previous version can no longer be published
+            requests.onWaypointsChanged();
+            routeState = null;
+            progressTracker = null;
+            offRouteDetector = null;
+        }
         this.waypoints = waypoints;
+        restoreSavedRoute();
+    }
+
+    /**
+     * Installs the route of the session if it was computed for the current waypoints
+     * and no route was received since. Must be called from the main thread.
+     */
+    private void restoreSavedRoute() {
+        TourStore.SavedRoute saved = savedRoute;
+        if (saved == null || routeState != null || routingExecutor.isShutdown()) return;
+        if (saved.getWaypointCount() != waypoints.size() || saved.getWaypointsHash() != waypoints.hashCode()) return;
+
+        savedRoute = null;
+        int version = requests.getVersion();
+        routeDestination = new LatLng(saved.getDestinationLat(), saved.getDestinationLng());
+        Log.d("MapViewModel", "Itinéraire restauré (" + saved.getCompletedStops() + " arrêts effectués)");
+        routingExecutor.execute(() -> {
+            // Routes are only installed on this thread, so no route can arrive in between
+            if (routeState == null) {
+                applyRoute(saved.getRoute(), version, saved.getCompletedStops());
+            }
+        });
+    }
+
+    /**
+     * Returns the progress along the current route.
+     *
+     * @return the current {@link RouteState}, or {@code null} if no route matches the waypoints
+     */
+    public RouteState getRouteState() {
+        return routeState;
+    }
+
+    /**
+     * Returns the tracker of the courier's position along the current route, which
+     * gives the remaining distances and durations without any network call.
+     *
+     * @return the current {@link RouteProgressTracker}, or {@code null} if no route matches the waypoints
+     */
+    public RouteProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    /**
+     * Marks the current stop as completed, without any network call, and prepares
+     * the geometry of the remaining route in the background.
+     *
+     * @return {@code false} if there is no route or it is already finished
+     */
+    public boolean completeCurrentStop() {
+        RouteState state = routeState;
+        if (state == null || !state.completeStop()) return false;
+
+        CompactRoute route = latestRoute;
+        if (route != null) {
+            prepareGeometry(route, state.getCompletedStops());
+        }
+        session.updateCompletedStops(state.getCompletedStops());
+        return true;
+    }
+
+    /**
+     * Marks a stop as completed, whether or not it is the current one.
+     * <p>
+     * For the current stop, this is {@link #completeCurrentStop()}. Any other stop left
+     * takes the place of the current one and is completed at once, the stops left keeping
+     * their previous order. They are then re-sequenced on the routing thread starting from
+     * its position ({@link RouteOptimizer#reoptimize}), and the route for the new order is
+     * requested; until it is received, the position tracking is off. Must be called from
+     * the main thread.
+     * </p>
+     *
+     * @param stopIndex the index of the stop in {@link #getWaypoints()}
+     * @return {@code false} if there is no route or the stop is not left to visit
+     */
+    public boolean completeStop(int stopIndex) {
+        RouteState state = routeState;
+        if (state == null || state.isFinished()) return false;
+
+        int position = state.positionOf(stopIndex);
+        if (position < state.getCompletedStops()) return false;
+        if (position == state.getCompletedStops()) return completeCurrentStop();
+
+        int[] others = new int[state.getRemainingStops() - 1];
+        int count = 0;
+        for (int i = state.getCompletedStops(); i < state.getStopCount(); i++) {
+            if (state.getStop(i) != stopIndex) {
+                others[count++] = state.getStop(i);
+            }
+        }
+        state.completeOutOfOrder(stopIndex, others);
+
+        // The legs of the current route no longer follow the visiting order
+        requests.onWaypointsChanged();
+        progressTracker = null;
+        offRouteDetector = null;
+        session.clearRoute();
+
+        int resequence = ++resequenceCount;
+        int completed = state.getCompletedStops();
+        List<LatLng> all = waypoints;
+        LatLng destination = routeDestination;
+        if (routingExecutor.isShutdown()) return true;
+        routingExecutor.execute(() -> {
+            long start = System.nanoTime();
+            int[] order = resequenceAfter(all, destination, stopIndex, others);
+            Log.d("MapViewModel", "Arrêt " + stopIndex + " livré hors ordre, " + order.length
+                    + " arrêts réordonnés en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            mainHandler.post(() -> onResequenced(state, resequence, completed, order));
+        });
+        return true;
+    }
+
+    /**
+     * Applies the order computed by {@link #resequenceAfter} and requests the route for it,
+     * unless the route was replaced or another stop was delivered out of order meanwhile.
+     */
+    private void onResequenced(RouteState state, int resequence, int completed, int[] order) {
+        if (routeState != state || resequence != resequenceCount) return;
+
+        // A stop completed in the meantime already changed the stops left
+        if (state.getCompletedStops() == completed) {
+            state.reorderRemaining(order);
+        }
+        reroute(waypoints.get(state.getStop(state.getCompletedStops() - 1)), state);
+    }
+
+    /**
+     * Orders {@code others}, the stops left, for a tour starting at {@code stopIndex} and
+     * ending at {@code destination}. Runs on the routing thread.
+     */
+    private int[] resequenceAfter(List<LatLng> all, LatLng destination, int stopIndex, int[] others) {
+        if (destination == null || others.length < 2) return others;
+
+        double[] lats = new double[others.length];
+        double[] lngs = new double[others.length];
+        int[] order = new int[others.length];
+        for (int i = 0; i < others.length; i++) {
+            lats[i] = all.get(others[i]).latitude;
+            lngs[i] = all.get(others[i]).longitude;
+            order[i] = i + 1;
+        }
+        LatLng origin = all.get(stopIndex);
+        DistanceMatrix matrix = DistanceMatrix.haversine(origin.latitude, origin.longitude,
+                destination.latitude, destination.longitude, lats, lngs);
+
+        int[] improved = resequencer.reoptimize(matrix, order);
+        int[] remaining = new int[improved.length];
+        for (int i = 0; i < improved.length; i++) {
+            remaining[i] = others[improved[i] - 1];
+        }
+        return remaining;
     }
 
     /**
      * Initiates an asynchronous request to fetch directions from the Google Maps API.
      * <p>
-     * Uses the {@link GoogleMapsServices} to fetch a route starting from
-     * {@code startingLocation}, passing through any set {@code waypoints}, and ending at {@code userLocation}.
-     * On success, posts the {@link DirectionsResponse} to {@link #routeLiveData}.
+     * The stops are first sequenced locally with {@link #computeWaypointOrder}, then
+     * {@link GoogleMapsServices} fetches a route starting from {@code userLocation},
+     * passing through the {@code waypoints} in that order, and ending at {@code startingLocation}.
+     * On success, builds a new {@link RouteState} from the legs of the response, then
+     * posts the {@link CompactRoute} to {@link #routeLiveData}.
      * On failure, logs an error message.
      * </p>
+     * <p>
+     * The request is sent {@link RouteRequestCoordinator#DEBOUNCE_MS} after the last call,
+     * and not at all if a route for the current waypoints was already received or is
+     * being fetched. Must be called from the main thread.
+     * </p>
      *
-     * @param userLocation     the final destination {@link LatLng} (typically user's current location)
-     * @param startingLocation the origin {@link LatLng} for the route
+     * @param userLocation     the origin {@link LatLng} (typically user's current location)
+     * @param startingLocation the final destination {@link LatLng} of the route
      */
     public void fetchDirectionsFromService(LatLng userLocation, LatLng startingLocation) {
-        GoogleMapsServices service = new GoogleMapsServices(BuildConfig.MAPS_API_KEY);
+        if (userLocation == null || startingLocation == null) {
+            Log.e("MapViewModel", "Error in fetchDirections : position indisponible");
+            return;
+        }
+
+        requests.submit(version -> {
+            if (routingExecutor.isShutdown()) {
+                requests.onRequestFinished(version);
+                return;
+            }
+            List<LatLng> stops = new ArrayList<>(waypoints);
+            routeDestination = startingLocation;
+            routingExecutor.execute(() -> {
+                List<Integer> order = computeWaypointOrder(userLocation, startingLocation, stops);
+                requestRoute(version, userLocation, startingLocation, stops, order, null, stops);
+            });
+        });
+    }
+
+    /**
+     * Feeds a position of the courier to the off-route detection, and re-routes if they
+     * have left the current leg for good. Must be called from the main thread.
+     *
+     * @param position  the courier's position
+     * @param accuracyM the accuracy radius of the position in meters, or 0 if unknown
+     * @param timeMs    the time of the position, in milliseconds on a monotonic clock
+     */
+    public void onUserLocation(LatLng position, float accuracyM, long timeMs) {
+        RouteState state = routeState;
+        OffRouteDetector detector = offRouteDetector;
+        if (state == null || detector == null || state.isFinished()) return;
+
+        if (detector.onLocation(position.latitude, position.longitude, accuracyM, timeMs, state.getCurrentLeg())) {
+            Log.i("MapViewModel", "Hors itinéraire (" + Math.round(detector.getLastDistance()) + " m) : recalcul");
+            reroute(position, state);
+        }
+    }
+
+    /**
+     * Fetches a route from {@code position} through the stops not completed yet, keeping
+     * their visiting order, to the destination of the current route.
+     */
+    private void reroute(LatLng position, RouteState state) {
+        LatLng destination = routeDestination;
+        List<LatLng> all = waypoints;
+        if (destination == null) return;
 
-        service.fetchDirections(userLocation, startingLocation, waypoints, new GoogleMapsServices.DirectionsCallback() {
+        int remaining = state.getRemainingStops();
+        int[] stopIndices = new int[remaining];
+        List<LatLng> stops = new ArrayList<>(remaining);
+        List<Integer> order = new ArrayList<>(remaining);
+        for (int i = 0; i < remaining; i++) {
+            stopIndices[i] = state.getStop(state.getCompletedStops() + i);
+            stops.add(all.get(stopIndices[i]));
+            order.add(i);
+        }
+        requests.submitNow(version -> {
+            if (routingExecutor.isShutdown()) {
+                requests.onRequestFinished(version);
+                return;
+            }
+            routingExecutor.execute(() -> requestRoute(version, position, destination, stops, order, stopIndices, all));
+        });
+    }
+
+    /**
+     * Requests a route and, on success, replaces the current one, unless the waypoints
+     * changed in the meantime.
+     *
+     * @param version     the waypoint version the request is made for
+     * @param stopIndices index in {@link #waypoints} of each of {@code stops}, or {@code null}
+     *                    if {@code stops} is the whole waypoint list
+     * @param all         the whole waypoint list the request is made for, saved with the route
+     */
+    private void requestRoute(int version, LatLng origin, LatLng destination, List<LatLng> stops,
+                              List<Integer> order, int[] stopIndices, List<LatLng> all) {
+        GoogleMapsServices.getInstance().fetchDirections(origin, destination, stops, order, new GoogleMapsServices.DirectionsCallback() {
             @Override
-            public void onDirectionsFetched(DirectionsResponse response) {
-                routeLiveData.postValue(response);
+            public void onDirectionsFetched(CompactRoute route) {
+                // A route fetched in a single request is delivered on the main thread
+                if (routingExecutor.isShutdown()) {
+                    requests.onRequestFinished(version);
+                    return;
+                }
+                routingExecutor.execute(() -> onRouteFetched(route, version, stopIndices, all));
             }
 
             @Override
             public void onError(String message) {
                 Log.e("MapViewModel", "Error in fetchDirections : " + message);
+                requests.onRequestFinished(version);
+            }
+        });
+    }
+
+    /**
+     * Installs a fetched route and saves it in the session, unless it is stale. Runs on
+     * the routing thread, where the state and the tracking of the route are built.
+     */
+    private void onRouteFetched(CompactRoute route, int version, int[] stopIndices, List<LatLng> all) {
+        if (!requests.isCurrent(version)) {
+            Log.d("MapViewModel", "Itinéraire obsolète (v" + version + ") ignoré");
+            requests.onRequestFinished(version);
+            return;
+        }
+        if (stopIndices != null) {
+            int[] mapped = new int[route.getWaypointCount()];
+            for (int i = 0; i < mapped.length; i++) {
+                mapped[i] = stopIndices[route.getWaypoint(i)];
+            }
+            route = route.withWaypointOrder(mapped);
+        }
+        LatLng end = routeDestination;
+        if (applyRoute(route, version, 0) && end != null) {
+            session.setRoute(new TourStore.SavedRoute(route, all.hashCode(), all.size(),
+                    end.latitude, end.longitude, 0));
+        }
+    }
+
+    /**
+     * Makes {@code route} the current route, with its first {@code completedStops} stops
+     * already done, and posts it with its geometry. Runs on the routing thread only: the
+     * state and the tracking are built there, then published together, unless the
+     * waypoints changed in the meantime.
+     *
+     * @return {@code false} if the route was stale and dropped
+     */
+    private boolean applyRoute(CompactRoute route, int version, int completedStops) {
+        RouteState state = buildRouteState(route);
+        for (int i = 0; i < completedStops; i++) {
+            state.completeStop();
+        }
+        RouteTracking tracking = buildRouteTracking(route);
+
+        boolean applied = requests.applyIfCurrent(version, () -> {
+            routeState = state;
+            progressTracker = tracking.progressTracker;
+            offRouteDetector = tracking.offRouteDetector;
+            latestRoute = route;
+        });
+        if (!applied) {
+            Log.d("MapViewModel", "Itinéraire obsolète (v" + version + ") ignoré");
+            requests.onRequestFinished(version);
+            return false;
+        }
+        routeLiveData.postValue(route);
+        prepareGeometry(route, state.getCompletedStops());
+        return true;
+    }
+
+    /**
+     * Computes the visiting order of the given stops on the device, without any
+     * network call. Blocks for at most {@link RouteOptimizer#DEFAULT_TIME_BUDGET_MS};
+     * call it from a background thread.
+     *
+     * @param origin      the starting point of the tour
+     * @param destination the end point of the tour
+     * @param stops       the stops to visit
+     * @return the waypoint order, as indices into {@code stops}
+     */
+    public List<Integer> computeWaypointOrder(LatLng origin, LatLng destination, List<LatLng> stops) {
+        double[] lats = new double[stops.size()];
+        double[] lngs = new double[stops.size()];
+        for (int i = 0; i < stops.size(); i++) {
+            lats[i] = stops.get(i).latitude;
+            lngs[i] = stops.get(i).longitude;
+        }
+
+        long start = System.nanoTime();
+        List<Integer> order = routeOptimizer.optimize(origin.latitude, origin.longitude,
+                destination.latitude, destination.longitude, lats, lngs);
+        Log.d("MapViewModel", "Ordre des " + stops.size() + " arrêts calculé en "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return order;
+    }
+
+    /**
+     * Decodes and simplifies the route from {@code firstLeg} on the routing thread, then
+     * posts it to {@link #geometryLiveData}. The Douglas-Peucker pass runs once per route.
+     */
+    private void prepareGeometry(CompactRoute route, int firstLeg) {
+        if (routingExecutor.isShutdown()) return;
+        routingExecutor.execute(() -> {
+            if (route != simplifiedRoute) {
+                long start = System.nanoTime();
+                pointImportance = RouteGeometry.computeImportance(route);
+                simplifiedRoute = route;
+                Log.d("MapViewModel", "Simplification de " + route.getPointCount() + " points en "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
             }
+            geometryLiveData.postValue(RouteGeometry.prepare(route, pointImportance, firstLeg));
         });
     }
 
+    private static RouteState buildRouteState(CompactRoute route) {
+        int[] distances = new int[route.getLegCount()];
+        int[] durations = new int[route.getLegCount()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = route.getLegDistance(i);
+            durations[i] = route.getLegDuration(i);
+        }
+        int[] stopOrder = new int[route.getWaypointCount()];
+        for (int i = 0; i < stopOrder.length; i++) {
+            stopOrder[i] = route.getWaypoint(i);
+        }
+        return RouteState.fromLegs(distances, durations, stopOrder);
+    }
+
+    /** Progress tracker and off-route detector of a route, published together. */
+    private static final class RouteTracking {
+        final RouteProgressTracker progressTracker;
+        final OffRouteDetector offRouteDetector;
+
+        RouteTracking(RouteProgressTracker progressTracker, OffRouteDetector offRouteDetector) {
+            this.progressTracker = progressTracker;
+            this.offRouteDetector = offRouteDetector;
+        }
+    }
+
+    /** Builds the progress tracker and the off-route detector of a new route. */
+    private static RouteTracking buildRouteTracking(CompactRoute route) {
+        int points = route.getPointCount();
+        double[] lats = new double[points];
+        double[] lngs = new double[points];
+        for (int i = 0; i < points; i++) {
+            lats[i] = route.getLatitude(i);
+            lngs[i] = route.getLongitude(i);
+        }
+        int legs = route.getLegCount();
+        int[] starts = new int[legs + 1];
+        int[] distances = new int[legs];
+        int[] durations = new int[legs];
+        for (int i = 0; i < legs; i++) {
+            starts[i] = route.getLegPointStart(i);
+            distances[i] = route.getLegDistance(i);
+            durations[i] = route.getLegDuration(i);
+        }
+        starts[legs] = route.getLegPointStart(legs);
+        return new RouteTracking(RouteProgressTracker.fromGeometry(lats, lngs, points, starts, distances, durations),
+                OffRouteDetector.fromGeometry(lats, lngs, points, starts));
+    }
+
     /**
      * Clears the current route by setting the LiveData value to null.
      * <p>
-     * Observers of {@link #getRouteLiveData()} will receive a null value.
+     * Observers of {@link #getRouteLiveData()} will receive a null value, and the next
+     * call to {@link #fetchDirectionsFromService} requests a route again.
      * </p>
      */
     public void clearRoute() {
+        requests.onRouteCleared();
+        session.clearRoute();
+        routeState = null;
+        progressTracker = null;
+        offRouteDetector = null;
+        latestRoute = null;
         routeLiveData.setValue(null);
+        geometryLiveData.setValue(null);
+    }
+
+    @Override
+    protected void onCleared() {
+        requests.cancel();
+        routingExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package ui;
+
+import android.annotation.SuppressLint;
+import android.graphics.Rect;
+import android.media.Image;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.concurrent.Executor;
+
+/**
+ * CameraX analyzer that decodes the QR codes of the parcel labels with ML Kit.
+ * <p>
+ * The scanner only looks for QR codes, which is much cheaper than the default
+ * all-formats detection. Frames are handed to ML Kit on the analysis thread and the
+ * ML Kit callbacks run on the thread that completed the decode, so the main thread only
+ * receives the decoded values. A frame is closed once its decode completes; with
+ * {@link ImageAnalysis#STRATEGY_KEEP_ONLY_LATEST}, at most one frame is in flight and
+ * the camera keeps dropping the frames that arrive meanwhile.
+ * </p>
+ * <p>
+ * The analysis can be paused without unbinding the camera ({@link #setPaused}), which
+ * keeps the scanner warm between two scans.
+ * </p>
+ * <p>
+ * When {@code centerFraction} is below 1, only the codes whose center lies in the
+ * central part of the frame are reported, so that the courier scans the label they aim
+ * at and not a neighbouring one.
+ * </p>
+ * <p>
+ * The latency of each frame, from its arrival in the analyzer to the end of its
+ * decode, is measured; {@link #getAverageLatencyMs()} and the other getters expose it
+ * and {@link #close()} logs a summary.
+ * </p>
+ */
+public final class QrCodeAnalyzer implements ImageAnalysis.Analyzer {
+
+    private static final String TAG = "QrCodeAnalyzer";
+
+    /** Runs the ML Kit callbacks on the thread that completed the decode, off the main thread. */
+    private static final Executor DIRECT = Runnable::run;
+
+    /** Receives the decoded QR codes. */
+    public interface Listener {
+        /**
+         * Called on the main thread for each QR code decoded in the target area.
+         *
+         * @param value     the raw value of the code
+         * @param latencyMs time from the arrival of the frame to the end of its decode
+         */
+        void onQrCode(String value, long latencyMs);
+    }
+
+    /** Scanner options restricted to the QR codes of the labels. */
+    public static final BarcodeScannerOptions OPTIONS = new BarcodeScannerOptions.Builder()
+            .setBarcodeFormats(Barcode.FORMAT_QR_CODE)
+            .build();
+
+    private final BarcodeScanner scanner = BarcodeScanning.getClient(OPTIONS);
+    private final Listener listener;
+    private final float centerFraction;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean closed;
+    private volatile boolean paused;
+
+    // Written by one decode at a time
+    private volatile int frameCount;
+    private volatile long totalLatencyMs;
+    private volatile long lastLatencyMs;
+    private volatile long maxLatencyMs;
+
+    /**
+     * @param centerFraction the fraction of the frame width and height, around its center,
+     *                       in which codes are reported; 1 reports every code
+     * @param listener       receives the decoded values
+     */
+    public QrCodeAnalyzer(float centerFraction, Listener listener) {
+        this.centerFraction = centerFraction;
+        this.listener = listener;
+    }
+
+    @Override
+    @SuppressLint("UnsafeOptInUsageError")
+    public void analyze(@NonNull ImageProxy imageProxy) {
+        Image media = imageProxy.getImage();
+        if (closed || paused || media == null) {
+            imageProxy.close();
+            return;
+        }
+
+        long start = System.nanoTime();
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        // Bounding boxes are given in the upright image
+        boolean swapped = rotation == 90 || rotation == 270;
+        int width = swapped ? imageProxy.getHeight() : imageProxy.getWidth();
+        int height = swapped ? imageProxy.getWidth() : imageProxy.getHeight();
+
+        scanner.process(InputImage.fromMediaImage(media, rotation))
+                .addOnSuccessListener(DIRECT, barcodes -> {
+                    long latency = recordLatency(start);
+                    for (Barcode barcode : barcodes) {
+                        String value = barcode.getRawValue();
+                        if (value == null || !isInTargetArea(barcode.getBoundingBox(), width, height)) continue;
+                        mainHandler.post(() -> {
+                            if (!closed && !paused) listener.onQrCode(value, latency);
+                        });
+                    }
+                })
+                .addOnFailureListener(DIRECT, e -> Log.e(TAG, "Erreur de décodage", e))
+                .addOnCompleteListener(DIRECT, task -> imageProxy.close());
+    }
+
+    /**
+     * Pauses or resumes the analysis. While paused, frames are closed as soon as they
+     * arrive and no code is reported, but the ML Kit scanner stays loaded.
+     *
+     * @param paused {@code true} to pause
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Stops reporting codes and releases the ML Kit scanner. Call it when the camera is
+     * unbound, e.g. when the view of the hosting fragment is destroyed.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        scanner.close();
+        Log.d(TAG, frameCount + " images analysées, latence moyenne " + getAverageLatencyMs()
+                + " ms, max " + maxLatencyMs + " ms");
+    }
+
+    /** @return the number of frames decoded so far */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** @return the latency of the last decoded frame, in milliseconds */
+    public long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    /** @return the highest latency of a frame, in milliseconds */
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    /** @return the average latency of the frames decoded so far, in milliseconds */
+    public long getAverageLatencyMs() {
+        int frames = frameCount;
+        return frames == 0 ? 0 : totalLatencyMs / frames;
+    }
+
+    private long recordLatency(long startNanos) {
+        long latency = (System.nanoTime() - startNanos) / 1_000_000;
+        lastLatencyMs = latency;
+        totalLatencyMs += latency;
+        if (latency > maxLatencyMs) maxLatencyMs = latency;
+        frameCount++;
+        return latency;
+    }
+
+    private boolean isInTargetArea(Rect box, int width, int height) {
+        if (centerFraction >= 1f || box == null) return true;
+
+        float marginX = width * (1f - centerFraction) / 2f;
+        float marginY = height * (1f - centerFraction) / 2f;
+        return box.exactCenterX() >= marginX && box.exactCenterX() <= width - marginX
+                && box.exactCenterY() >= marginY && box.exactCenterY() <= height - marginY;
+    }
+}
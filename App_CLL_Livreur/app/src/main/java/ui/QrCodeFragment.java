@@ -1,16 +1,11 @@
 package ui;
 
-import android.annotation.SuppressLint;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.camera.core.CameraSelector;
-import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.Preview;
-import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
-import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
 import android.util.Log;
@@ -18,19 +13,26 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
+import android.widget.TextView;
 
 import com.example.app_cll_livreur.R;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
-import com.google.mlkit.vision.barcode.common.Barcode;
-import com.google.mlkit.vision.common.InputImage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.controller.ColisIntake;
 
 /**
  * Fragment that handles QR code scanning using CameraX and ML Kit.
  * <p>
- * Displays a camera preview, analyzes frames for barcodes, and returns
- * the first scanned value to the calling fragment via setFragmentResult.
+ * Used to load the van: the camera keeps running, every code is sent to the
+ * {@link ColisIntake} pipeline, a code seen again within {@link #DUPLICATE_WINDOW_MS}
+ * is ignored, and a panel shows the live counters and the packages that could not be added.
+ * </p>
+ * <p>
+ * The frames are decoded by a {@link QrScanner} on a dedicated thread, so the
+ * analysis never competes with the UI thread; the scanner is released with the view.
  * </p>
  */
 public class QrCodeFragment extends Fragment {
@@ -41,14 +43,20 @@ public class QrCodeFragment extends Fragment {
     /** Button to close the scanner and return to the previous screen. */
     private ImageButton btnClose;
 
+    /** Time during which a code scanned again is ignored. */
+    private static final long DUPLICATE_WINDOW_MS = 3000;
+
+    /** Number of failures listed in the session panel. */
+    private static final int MAX_LISTED_FAILURES = 5;
+
+    private QrScanner scanner;
+
+    /** Time of the last scan of each code. */
+    private final Map<String, Long> lastScans = new HashMap<>();
+
     /** Default empty constructor required for fragment instantiation. */
     public QrCodeFragment() { }
 
-    @Override
-    public void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-    }
-
     /**
      * Inflates the QR code scanner layout, initializes UI elements,
      * and starts the camera preview and analysis.
@@ -70,73 +78,64 @@ public class QrCodeFragment extends Fragment {
                 .getSupportFragmentManager()
                 .popBackStack());
 
-        startCamera();
+        showSessionProgress(view, savedInstanceState == null);
+
+        scanner = new QrScanner(this, previewView, this::onQrCode);
+        scanner.resume();
         return view;
     }
 
     /**
-     * Initializes the CameraX ProcessCameraProvider and binds the preview
-     * and image analysis use cases.
+     * Shows the session panel and binds it to the intake counters.
+     *
+     * @param view         the root view of the fragment
+     * @param startSession {@code true} to reset the counters of the previous session
      */
-    private void startCamera() {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture =
-                ProcessCameraProvider.getInstance(requireContext());
-
-        cameraProviderFuture.addListener(() -> {
-            try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-                bindCamera(cameraProvider);
-            } catch (Exception e) {
-                e.printStackTrace();
+    private void showSessionProgress(View view, boolean startSession) {
+        ColisIntake intake = ColisIntake.getInstance(requireContext());
+        if (startSession) {
+            intake.startSession();
+        }
+
+        view.findViewById(R.id.scan_session_panel).setVisibility(View.VISIBLE);
+        TextView tvProgress = view.findViewById(R.id.tv_scan_progress);
+        TextView tvErrors = view.findViewById(R.id.tv_scan_errors);
+        intake.getProgress().observe(getViewLifecycleOwner(), progress -> {
+            List<ColisIntake.Failure> failures = progress.getFailures();
+            tvProgress.setText(getString(R.string.__qrcode__ScanProgress,
+                    progress.getAdded(), progress.getPending(), progress.getFailed()));
+
+            StringBuilder errors = new StringBuilder();
+            for (int i = Math.max(0, failures.size() - MAX_LISTED_FAILURES); i < failures.size(); i++) {
+                if (errors.length() > 0) errors.append('\n');
+                errors.append(failures.get(i).getValue()).append(" : ").append(failures.get(i).getMessage());
             }
-        }, ContextCompat.getMainExecutor(requireContext()));
+            tvErrors.setText(errors);
+            tvErrors.setVisibility(failures.isEmpty() ? View.GONE : View.VISIBLE);
+        });
+    }
+
+    /** Releases the scanner; the camera itself is unbound with the view lifecycle. */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        scanner.release();
     }
 
     /**
-     * Configures and binds the camera preview and image analysis to the
-     * fragment lifecycle. Uses ML Kit's BarcodeScanner to process frames.
+     * Sends a scanned value to the intake pipeline, unless the same code was already
+     * scanned in the last {@link #DUPLICATE_WINDOW_MS}.
      *
-     * @param cameraProvider the {@link ProcessCameraProvider} instance
+     * @param value     the decoded value
+     * @param latencyMs the decode latency of the frame
      */
-    @SuppressLint("UnsafeOptInUsageError")
-    private void bindCamera(ProcessCameraProvider cameraProvider) {
-        Preview preview = new Preview.Builder().build();
-        preview.setSurfaceProvider(previewView.getSurfaceProvider());
-
-        ImageAnalysis analysis = new ImageAnalysis.Builder()
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .build();
-
-        BarcodeScanner scanner = BarcodeScanning.getClient();
-
-        analysis.setAnalyzer(ContextCompat.getMainExecutor(requireContext()), imageProxy -> {
-            InputImage image = InputImage.fromMediaImage(
-                    imageProxy.getImage(), imageProxy.getImageInfo().getRotationDegrees());
-
-            scanner.process(image)
-                    .addOnSuccessListener(barcodes -> {
-                        for (Barcode barcode : barcodes) {
-                            String value = barcode.getRawValue();
-
-                            // Envoyer le résultat au fragment appelant
-                            Bundle result = new Bundle();
-                            result.putString("qr_result", value);
-                            getParentFragmentManager().setFragmentResult("qr_scan", result);
-
-                            // Fermer ce fragment
-                            requireActivity().getSupportFragmentManager().popBackStack();
-                            break;
-                        }
-                    })
-                    .addOnFailureListener(e -> Log.e("QR", "Scan error", e))
-                    .addOnCompleteListener(task -> imageProxy.close());
-        });
-
-        CameraSelector cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                .build();
-
-        cameraProvider.unbindAll();
-        cameraProvider.bindToLifecycle(this, cameraSelector, preview, analysis);
+    private void onQrCode(String value, long latencyMs) {
+        long now = SystemClock.elapsedRealtime();
+        Long last = lastScans.put(value, now);
+        if (last != null && now - last < DUPLICATE_WINDOW_MS) return;
+
+        if (ColisIntake.getInstance(requireContext()).submit(value)) {
+            Log.d("QR", "Colis " + value + " en file (décodé en " + latencyMs + " ms)");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package ui;
+
+import android.util.Log;
+import android.util.Size;
+
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.fragment.app.Fragment;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Camera preview and QR code analysis bound to the view of a fragment.
+ * <p>
+ * The {@link ProcessCameraProvider} is requested as soon as the scanner is created, and
+ * the preview and analysis use cases are bound on the first {@link #resume()}. After
+ * that, {@link #pause()} only stops the analysis: the camera stays bound and the ML Kit
+ * scanner stays loaded, so the next {@link #resume()} is instant. Everything is released
+ * with {@link #release()}, and CameraX stops the camera with the view lifecycle.
+ * </p>
+ * <p>
+ * Frames are analyzed by a {@link QrCodeAnalyzer} on a dedicated thread, at a resolution
+ * close to {@link #ANALYSIS_RESOLUTION}. All methods must be called from the main thread.
+ * </p>
+ */
+public class QrScanner {
+
+    private static final String TAG = "QrScanner";
+
+    /** Target resolution of the analyzed frames, enough for a label held at arm's length. */
+    static final Size ANALYSIS_RESOLUTION = new Size(1280, 720);
+
+    /** Part of the frame, around its center, in which codes are accepted. */
+    static final float CENTER_FRACTION = 0.7f;
+
+    private final Fragment host;
+    private final PreviewView previewView;
+    private final ListenableFuture<ProcessCameraProvider> providerFuture;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private final QrCodeAnalyzer analyzer;
+    private ImageAnalysis analysis;
+    private boolean bindRequested;
+    private boolean released;
+
+    /**
+     * Creates a paused scanner. Call it from {@code onCreateView} of {@code host}.
+     *
+     * @param host        the fragment whose view lifecycle the camera is bound to
+     * @param previewView the view showing the camera feed
+     * @param listener    receives the decoded codes while the scanner is resumed
+     */
+    public QrScanner(Fragment host, PreviewView previewView, QrCodeAnalyzer.Listener listener) {
+        this.host = host;
+        this.previewView = previewView;
+        this.providerFuture = ProcessCameraProvider.getInstance(host.requireContext());
+        this.analyzer = new QrCodeAnalyzer(CENTER_FRACTION, listener);
+        analyzer.setPaused(true);
+    }
+
+    /** Starts analyzing frames, binding the camera the first time. */
+    public void resume() {
+        if (released) return;
+        analyzer.setPaused(false);
+        if (!bindRequested) {
+            bindRequested = true;
+            providerFuture.addListener(this::bind, ContextCompat.getMainExecutor(host.requireContext()));
+        }
+    }
+
+    /** Stops analyzing frames; the camera stays bound. */
+    public void pause() {
+        analyzer.setPaused(true);
+    }
+
+    /** Stops the analysis and releases the ML Kit scanner and the analysis thread. */
+    public void release() {
+        if (released) return;
+        released = true;
+        if (analysis != null) {
+            analysis.clearAnalyzer();
+            analysis = null;
+        }
+        analyzer.close();
+        analysisExecutor.shutdown();
+    }
+
+    /** @return the analyzer, for its latency metrics */
+    public QrCodeAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    private void bind() {
+        // The view may have been destroyed while the provider was starting
+        if (released || host.getView() == null) return;
+
+        ProcessCameraProvider cameraProvider;
+        try {
+            cameraProvider = providerFuture.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Caméra indisponible", e);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+        analysis = new ImageAnalysis.Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_RESOLUTION,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                        .build())
+                .build();
+        analysis.setAnalyzer(analysisExecutor, analyzer);
+
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(CameraSelector.LENS_FACING_BACK)
+                .build();
+
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(host.getViewLifecycleOwner(), cameraSelector, preview, analysis);
+        Log.d(TAG, "Caméra liée en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,154 @@
+package ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Decides which route requests of {@link MapViewModel} actually reach the network.
+ * <p>
+ * Each distinct list of waypoints gets a version number. A request is tagged with the
+ * version it was made for, and a response whose version is no longer current is stale
+ * and must be dropped ({@link #isCurrent}), so a slow response cannot overwrite the route
+ * of a newer set of stops.
+ * </p>
+ * <p>
+ * {@link #submit} waits {@link #DEBOUNCE_MS} for the waypoints to settle (a burst of
+ * scans yields a single request), then skips the request if a route for the current
+ * version was already received, or if one is already in flight.
+ * {@link #submitNow} only coalesces with a request in flight, for re-routing.
+ * </p>
+ * <p>
+ * {@link #submit}, {@link #submitNow} and {@link #onWaypointsChanged} are called from the
+ * main thread; the completion methods may be called from any thread. Since
+ * {@link #onWaypointsChanged} and {@link #applyIfCurrent} hold the same lock, a route
+ * is either published before the version changes or dropped.
+ * </p>
+ */
+final class RouteRequestCoordinator {
+
+    private static final String TAG = "RouteRequestCoordinator";
+
+    /** Quiet period after the last call to {@link #submit} before requesting. */
+    static final long DEBOUNCE_MS = 400;
+
+    private static final int NONE = -1;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Runnable pending;
+    private int version;
+    private int inFlightVersion = NONE;
+    private int routedVersion = NONE;
+
+    /**
+     * Starts a new waypoint version: responses to earlier requests become stale and the
+     * next {@link #submit} requests again.
+     */
+    synchronized void onWaypointsChanged() {
+        version++;
+    }
+
+    /** @return the version of the current waypoints */
+    synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Schedules a request for the current waypoints, once they have not changed for
+     * {@link #DEBOUNCE_MS}, replacing any request still waiting.
+     *
+     * @param request runs the request, given the version to tag it with
+     */
+    void submit(IntConsumer request) {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+        }
+        pending = () -> {
+            pending = null;
+            int tagged;
+            synchronized (this) {
+                if (routedVersion == version) {
+                    Log.d(TAG, "Itinéraire déjà à jour (v" + version + "), requête ignorée");
+                    return;
+                }
+                if (inFlightVersion == version) {
+                    Log.d(TAG, "Requête déjà en cours (v" + version + ")");
+                    return;
+                }
+                tagged = inFlightVersion = version;
+            }
+            request.accept(tagged);
+        };
+        handler.postDelayed(pending, DEBOUNCE_MS);
+    }
+
+    /**
+     * Runs a request for the current waypoints right away, unless one is already in flight.
+     *
+     * @param request runs the request, given the version to tag it with
+     */
+    void submitNow(IntConsumer request) {
+        int tagged;
+        synchronized (this) {
+            if (inFlightVersion == version) {
+                Log.d(TAG, "Requête déjà en cours (v" + version + ")");
+                return;
+            }
+            tagged = inFlightVersion = version;
+        }
+        request.accept(tagged);
+    }
+
+    /**
+     * @param requestVersion the version a response was requested for
+     * @return {@code true} if the response matches the current waypoints
+     */
+    synchronized boolean isCurrent(int requestVersion) {
+        return requestVersion == version;
+    }
+
+    /**
+     * Publishes the route of a version and records it as applied, only if that version is
+     * still current. {@code publish} runs under the lock of the coordinator, so the version
+     * cannot change between the check and the publication.
+     *
+     * @param requestVersion the version of the route
+     * @param publish        installs the route; must be short and must not block
+     * @return {@code false} if the version is stale and nothing was published
+     */
+    synchronized boolean applyIfCurrent(int requestVersion, Runnable publish) {
+        if (requestVersion != version) return false;
+        publish.run();
+        routedVersion = requestVersion;
+        if (inFlightVersion == requestVersion) {
+            inFlightVersion = NONE;
+        }
+        return true;
+    }
+
+    /**
+     * Records the end of a request that did not produce a route, or whose route was stale.
+     *
+     * @param requestVersion the version of the request
+     */
+    synchronized void onRequestFinished(int requestVersion) {
+        if (inFlightVersion == requestVersion) {
+            inFlightVersion = NONE;
+        }
+    }
+
+    /** Forgets the last route received, so the next {@link #submit} requests again. */
+    synchronized void onRouteCleared() {
+        routedVersion = NONE;
+    }
+
+    /** Drops the request waiting for the debounce delay, if any. */
+    void cancel() {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+}
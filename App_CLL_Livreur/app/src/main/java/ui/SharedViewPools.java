@@ -0,0 +1,51 @@
+package ui;
+
+import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One {@link RecyclerView.RecycledViewPool} per activity, shared by the package lists of
+ * its fragments.
+ * <p>
+ * A list fragment replaced and shown again (for instance the list of the delivery screen,
+ * opened from the map) then reuses the rows of the previous instance instead of
+ * inflating new ones. Pools are per activity because recycled views keep the context
+ * they were inflated with; a pool is dropped when its activity is destroyed.
+ * Main thread only.
+ * </p>
+ */
+public final class SharedViewPools {
+
+    /** Rows kept per view type, about two screens of packages. */
+    private static final int MAX_RECYCLED_ROWS = 20;
+
+    private static final Map<FragmentActivity, RecyclerView.RecycledViewPool> pools = new HashMap<>();
+
+    private SharedViewPools() { }
+
+    /**
+     * Returns the package list pool of an activity, creating it on first use.
+     *
+     * @param activity the host activity
+     * @return the {@link RecyclerView.RecycledViewPool} shared within that activity
+     */
+    public static RecyclerView.RecycledViewPool forActivity(FragmentActivity activity) {
+        RecyclerView.RecycledViewPool pool = pools.get(activity);
+        if (pool == null) {
+            pool = new RecyclerView.RecycledViewPool();
+            pool.setMaxRecycledViews(0, MAX_RECYCLED_ROWS);
+            pools.put(activity, pool);
+            activity.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    pools.remove(activity);
+                }
+            });
+        }
+        return pool;
+    }
+}
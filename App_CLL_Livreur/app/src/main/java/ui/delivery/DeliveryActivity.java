@@ -9,16 +9,17 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.example.app_cll_livreur.R;
 
-import java.util.ArrayList;
-
 import data.model.Colis;
+import data.outbox.DeliveryOutbox;
+import data.tour.TourSession;
 import ui.ColisViewModel;
+import utils.MarkerIconCache;
 
 /**
  * Activity responsible for displaying the delivery interface.
  * <p>
- * Initialize the layout, sets up the {@link ColisViewModel},
- * ingests a list of {@link Colis} passed via Intent, and hosts the
+ * Initialize the layout, sets up the {@link ColisViewModel}, which attaches
+ * to the {@link TourSession} holding the {@link Colis} of the tour, and hosts the
  * {@link DeliveryFragment} in its container.
  * </p>
  */
@@ -36,17 +37,12 @@ public class DeliveryActivity extends AppCompatActivity {
         // Set the layout for the delivery screen
         setContentView(R.layout.activity_delivery);
 
+        // Resume sending the operations left pending by a previous session
+        DeliveryOutbox.getInstance(this);
+        MarkerIconCache.getInstance().attach(this);
+
         // Obtain the ViewModel instance
         colisViewModel = new ViewModelProvider(this).get(ColisViewModel.class);
-        // Retrieve the list of Colis passed via Intent extras
-        ArrayList<Colis> colisList = getIntent().getParcelableArrayListExtra("colis_list");
-
-        if (colisList != null) {
-            for (Colis colis : colisList) {
-                colisViewModel.addColis(colis);
-            }
-        }
-
         if (savedInstanceState == null) {
             getSupportFragmentManager().beginTransaction()
                     .replace(R.id.fragment_container, new DeliveryFragment())
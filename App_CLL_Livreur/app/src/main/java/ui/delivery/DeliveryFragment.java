@@ -1,17 +1,16 @@
 package ui.delivery;
 
-import static utils.MapUtils.addUserMarker;
-
-import android.Manifest;
 import android.app.AlertDialog;
 import android.content.Intent;
-import android.content.pm.PackageManager;
+import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
-import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
 import androidx.lifecycle.ViewModelProvider;
@@ -25,10 +24,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.example.app_cll_livreur.BuildConfig;
 import com.example.app_cll_livreur.R;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -41,18 +37,24 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
-import data.api.maps.GoogleMapsServices;
-import data.api.amazi.AmaziServices;
+import data.location.LocationRepository;
 import data.model.Colis;
-import data.model.DirectionsResponse;
+import data.model.CompactRoute;
+import data.outbox.DeliveryOutbox;
+import data.outbox.OutboxEntry;
+import data.tour.TourSession;
+import data.tour.TourSnapshot;
+import route.RouteProgressTracker;
+import route.RouteState;
 import ui.ColisViewModel;
+import ui.CourierIdHolder;
 import ui.DeliveryIdHolder;
 import ui.MapViewModel;
-import ui.QrCodeFragment;
+import ui.QrScanner;
 import ui.login.LoginActivity;
 import utils.LocationUtils;
-import utils.MapUtils;
-import utils.TokenHolder;
+import utils.MapSceneManager;
+import utils.RouteGeometry;
 
 /**
  * Fragment that displays the delivery map and handles navigation logic.
@@ -62,15 +64,47 @@ import utils.TokenHolder;
  * current navigation state on a {@link GoogleMap}. It also supports QR code
  * scanning to confirm package delivery and updates delivery status via the Amazi API.
  * </p>
+ * <p>
+ * The scanner is an overlay of this screen rather than a separate fragment, so a scan
+ * does not destroy the map nor trigger a new route request. Between two stops its
+ * analysis is only paused: the camera stays bound and the ML Kit model stays loaded.
+ * </p>
+ * <p>
+ * While the fragment is resumed, the distance and time to the next stop and to the end of
+ * the tour are refreshed every {@link #PROGRESS_REFRESH_MS} from the courier's position
+ * on the fetched route ({@link RouteProgressTracker}), without any network call.
+ * </p>
  */
 public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
 
+    private static final long PROGRESS_REFRESH_MS = 1_000;
+
+    private final Handler progressHandler = new Handler(Looper.getMainLooper());
+    private final Runnable progressTick = new Runnable() {
+        @Override
+        public void run() {
+            refreshProgress();
+            progressHandler.postDelayed(this, PROGRESS_REFRESH_MS);
+        }
+    };
+
+    private final OnBackPressedCallback closeScannerOnBack = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            closeScanner();
+        }
+    };
+
     private GoogleMap mMap;
+    private QrScanner scanner;
+    private View scannerOverlay;
+    private long scanOpenedAt;
     private MapViewModel mapViewModel;
     private ColisViewModel colisViewModel;
-    private FusedLocationProviderClient fusedLocationProviderClient;
+    private LocationRepository locationRepository;
     private LatLng userLocation;
     private LatLng startingLocation;
+    private Location lastFix;
     TextView tvStopsRemaining;
     TextView tvTimeRemaining;
     TextView tvDistanceRemaining;
@@ -78,8 +112,7 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
     TextView tvDuration;
     TextView tvAdress;
     TextView tvName;
-    int currentWaypointIndex = 0;
-    List<Integer> waypointOrder;
+    private MapSceneManager mapScene;
     TextView dateTextView;
 
     /**
@@ -90,7 +123,7 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(requireActivity());
+        locationRepository = LocationRepository.getInstance(requireContext());
         mapViewModel = new ViewModelProvider(requireActivity()).get(MapViewModel.class);
     }
 
@@ -127,36 +160,25 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
         ImageView btnGoToListFragment = view.findViewById(R.id.btn_menu);
         btnGoToListFragment.setOnClickListener(v -> navigateToListFragment());
 
-        // Scan QR code to confirm a package
+        // Scan QR code to confirm a package, in the overlay kept warm between stops
+        scannerOverlay = view.findViewById(R.id.scanner_overlay);
+        scanner = new QrScanner(this, view.findViewById(R.id.scanner_preview), this::onDeliveryScan);
         ImageView btnScanQR = view.findViewById(R.id.btn_scan_qr);
-        btnScanQR.setOnClickListener(v -> {
-            getParentFragmentManager()
-                    .beginTransaction()
-                    .replace(R.id.fragment_container, new QrCodeFragment())
-                    .addToBackStack(null)
-                    .commit();
-        });
+        btnScanQR.setOnClickListener(v -> openScanner());
+        view.findViewById(R.id.btn_close_scanner).setOnClickListener(v -> closeScanner());
+        requireActivity().getOnBackPressedDispatcher().addCallback(getViewLifecycleOwner(), closeScannerOnBack);
 
         // Start Google Maps navigation to the next waypoint
         Button btnGoToGoogleMap = view.findViewById(R.id.btn_start_guidance);
         btnGoToGoogleMap.setOnClickListener(v -> {
-            if (mapViewModel.getWaypoints() != null && waypointOrder != null && !waypointOrder.isEmpty()) {
-                lancerNavigationVers(mapViewModel.getWaypoints().get(waypointOrder.get(currentWaypointIndex)));
+            RouteState routeState = mapViewModel.getRouteState();
+            if (mapViewModel.getWaypoints() != null && routeState != null && !routeState.isFinished()) {
+                lancerNavigationVers(mapViewModel.getWaypoints().get(routeState.getCurrentStop()));
             } else {
                 Toast.makeText(getContext(), "Plus de destination disponible", Toast.LENGTH_SHORT).show();
             }
         });
 
-        // Listen for QR scan results to check the package ID
-        getParentFragmentManager().setFragmentResultListener(
-                "qr_scan",
-                getViewLifecycleOwner(),
-                (requestKey, bundle) -> {
-                    String qrContent = bundle.getString("qr_result");
-                    checkPackageScan(qrContent);
-                }
-        );
-
         // Bind UI components for route info and date display
         tvStopsRemaining = view.findViewById(R.id.tv_stops_remaining_value);
         tvTimeRemaining = view.findViewById(R.id.tv_time_remaining_value);
@@ -173,22 +195,84 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
         return view;
     }
 
+    /**
+     * Restarts the shared location stream in case the permission was granted
+     * while this fragment was paused, and starts refreshing the progress cards.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        locationRepository.refresh();
+        progressHandler.post(progressTick);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        progressHandler.removeCallbacks(progressTick);
+    }
+
+    /** Releases the scanner; the camera itself is unbound with the view lifecycle. */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        scanner.release();
+        scanner = null;
+    }
+
+    /**
+     * Shows the scanner overlay over the map and resumes the analysis. The camera is bound
+     * on the first scan only; the map and the route stay as they are.
+     */
+    private void openScanner() {
+        scanOpenedAt = SystemClock.elapsedRealtime();
+        scannerOverlay.setVisibility(View.VISIBLE);
+        closeScannerOnBack.setEnabled(true);
+        scanner.resume();
+    }
+
+    /** Pauses the analysis and hides the scanner overlay, keeping the camera bound. */
+    private void closeScanner() {
+        scanner.pause();
+        scannerOverlay.setVisibility(View.GONE);
+        closeScannerOnBack.setEnabled(false);
+    }
+
+    /**
+     * Handles a QR code read by the embedded scanner.
+     *
+     * @param value     the decoded value
+     * @param latencyMs the decode latency of the frame
+     */
+    private void onDeliveryScan(String value, long latencyMs) {
+        if (scannerOverlay.getVisibility() != View.VISIBLE) return;
+        closeScanner();
+        Log.d("CLL-DeliveryFragment", "Colis scanné en " + (SystemClock.elapsedRealtime() - scanOpenedAt)
+                + " ms (décodage " + latencyMs + " ms)");
+        checkPackageScan(value);
+    }
+
     /**
      * Called when the GoogleMap is ready to be used.
-     * Obtains the user's current location and starts initial route calculation.
+     * Observes the user's position, which starts the initial route calculation.
      *
      * @param googleMap the GoogleMap instance
      */
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
-        getUserLocation();
+        mapScene = new MapSceneManager(requireContext(), mMap);
+        LocationUtils.ensureLocationPermission(this);
+        locationRepository.getLocation().observe(getViewLifecycleOwner(),
+                this::onUserLocation);
 
         if (mapViewModel.getWaypoints() == null || mapViewModel.getWaypoints().isEmpty()) {
             Log.w("CLL-DeliveryFragment", "drawRoute: no waypoints to display.");
         }
 
-        mapViewModel.getRouteLiveData().observe(getViewLifecycleOwner(), this::drawRoute);
+        mapViewModel.getRouteLiveData().observe(getViewLifecycleOwner(), this::onRouteFetched);
+        mapViewModel.getRouteGeometry().observe(getViewLifecycleOwner(), this::drawRoute);
+        mMap.setOnCameraIdleListener(() -> mapScene.onCameraIdle(mMap.getCameraPosition().zoom));
 
         Log.d("CLL-DeliveryFragment", "Google Map is ready.");
     }
@@ -205,89 +289,129 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Requests the user's current location, centers the map on it,
-     * places a user marker, and triggers route calculation.
+     * Handles a new position from the shared {@link LocationRepository}: moves the
+     * user marker, matches the fix on the current leg (re-routing if the courier left it
+     * for good), and on the first fix centers
+     * the map and triggers the route calculation if no route matches the current stops yet.
+     *
+     * @param fix the user's position
      */
-    private void getUserLocation() {
-        LocationUtils.fetchUserLocation(this, fusedLocationProviderClient,
-                latLng -> {
-                    userLocation = latLng;
-
-                    if (startingLocation == null) {
-                        startingLocation = latLng;
-                    }
-
-                    mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 12));
-                    addUserMarker(mMap, latLng, getResources(), R.drawable.ic_street_view);
-                    mapViewModel.fetchDirectionsFromService(userLocation, startingLocation);
-                },
-                errorMsg -> Log.e("Delivery", errorMsg)
-        );
+    private void onUserLocation(Location fix) {
+        LatLng latLng = LocationRepository.toLatLng(fix);
+        userLocation = latLng;
+        lastFix = fix;
+        trackProgress();
+        mapViewModel.onUserLocation(latLng, fix.hasAccuracy() ? fix.getAccuracy() : 0,
+                fix.getElapsedRealtimeNanos() / 1_000_000);
+        mapScene.updateUserLocation(latLng, getResources(), R.drawable.ic_street_view);
+
+        if (startingLocation == null) {
+            startingLocation = latLng;
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 12));
+            if (mapViewModel.getRouteState() == null) {
+                mapViewModel.fetchDirectionsFromService(userLocation, startingLocation);
+            }
+        }
     }
 
     /**
-     * Draws the calculated route on the map and updates internal state.
+     * Refreshes the route summary and the next-stop card when a new route is fetched.
      *
-     * @param response the {@link DirectionsResponse} containing route data
+     * @param route the fetched {@link CompactRoute}
      */
-    private void drawRoute(DirectionsResponse response) {
-        if (response == null || response.getRoutes() == null || response.getRoutes().isEmpty()) {
-            Log.w("CLL-DeliveryFragment", "drawRoute called with an empty response.");
+    private void onRouteFetched(CompactRoute route) {
+        RouteState routeState = mapViewModel.getRouteState();
+        if (route == null || routeState == null) {
+            Log.w("CLL-DeliveryFragment", "onRouteFetched called with an empty response.");
             return;
         }
 
-        waypointOrder = response.getRoutes().get(0).getWaypointOrder();
+        updateRouteInfo(routeState);
+        updateNextRoute();
+        trackProgress();
+        refreshProgress();
+    }
 
-        MapUtils.drawRouteOnMap(
-                mMap,
-                response,
-                mapViewModel.getWaypoints(),
-                getResources(),
-                R.drawable.ic_street_view,
-                userLocation
-        );
+    /**
+     * Matches the last fix on the leg currently being driven.
+     */
+    private void trackProgress() {
+        RouteProgressTracker tracker = mapViewModel.getProgressTracker();
+        RouteState routeState = mapViewModel.getRouteState();
+        if (lastFix == null || tracker == null || routeState == null) return;
+
+        tracker.onLocation(lastFix.getLatitude(), lastFix.getLongitude(),
+                lastFix.hasSpeed() ? lastFix.getSpeed() : 0,
+                lastFix.getElapsedRealtimeNanos() / 1_000_000, routeState.getCurrentLeg());
+    }
 
-        updateRouteInfo(response);
-        updateNextRoute();
+    /**
+     * Updates the distance and time left, to the next stop and to the end of the tour,
+     * from the position matched on the route. Keeps the per-leg values of the route
+     * until a fix has been matched.
+     */
+    private void refreshProgress() {
+        RouteProgressTracker tracker = mapViewModel.getProgressTracker();
+        RouteState routeState = mapViewModel.getRouteState();
+        if (tracker == null || routeState == null || routeState.isFinished()) return;
+        if (tracker.getMatchedLeg() != routeState.getCurrentLeg()) return;
+        if (!tracker.refresh(SystemClock.elapsedRealtime())) return;
+
+        tvDistance.setText(formatDistance(tracker.getLegRemainingDistance()));
+        tvDuration.setText(formatDuration(tracker.getLegRemainingDuration()));
+        tvDistanceRemaining.setText(formatDistance(tracker.getTourRemainingDistance()));
+        tvTimeRemaining.setText(formatDuration(tracker.getTourRemainingDuration()));
     }
 
     /**
-     * Aggregates total distance and duration from all route legs
-     * and displays them along with the remaining stop count.
+     * Draws the remaining route, prepared off the main thread, at the level of detail
+     * matching the current zoom. The {@link MapSceneManager} only updates what changed
+     * since the previous route: after a delivery, one marker is removed.
      *
-     * @param response the {@link DirectionsResponse} containing route legs
+     * @param geometry the {@link RouteGeometry} to draw
      */
-    private void updateRouteInfo(DirectionsResponse response) {
-        int totalDistance = 0;
-        int totalDuration = 0;
-
-        for (DirectionsResponse.Route route : response.getRoutes()) {
-            for (DirectionsResponse.Leg leg : route.getLegs()) {
-                totalDistance += leg.getDistance().getValue();
-                totalDuration += leg.getDuration().getValue();
-            }
+    private void drawRoute(RouteGeometry geometry) {
+        if (geometry == null) {
+            Log.w("CLL-DeliveryFragment", "drawRoute called with an empty response.");
+            return;
         }
 
-        tvStopsRemaining.setText(String.valueOf(colisViewModel.getColis().getValue().size()));
-        tvDistanceRemaining.setText(String.format("%.1f km", totalDistance / 1000.0));
+        mapScene.showRoute(geometry, mapViewModel.getWaypoints(), mMap.getCameraPosition().zoom);
+    }
 
-        int hours = totalDuration / 3600;
-        int minutes = (totalDuration % 3600) / 60;
-        String durationText = (hours > 0) ? String.format("%dh%02d", hours, minutes) : minutes + " min";
+    /**
+     * Displays the remaining distance, duration and stop count, read in O(1)
+     * from the prefix sums of the {@link RouteState}.
+     *
+     * @param routeState the progress along the current route
+     */
+    private void updateRouteInfo(RouteState routeState) {
+        tvStopsRemaining.setText(String.valueOf(routeState.getRemainingStops()));
+        tvDistanceRemaining.setText(formatDistance(routeState.getRemainingDistance()));
+        tvTimeRemaining.setText(formatDuration(routeState.getRemainingDuration()));
+    }
 
-        tvTimeRemaining.setText(durationText);
+    private static String formatDistance(long meters) {
+        return String.format("%.1f km", meters / 1000.0);
+    }
+
+    private static String formatDuration(long seconds) {
+        long hours = seconds / 3600;
+        long minutes = (seconds % 3600) / 60;
+        return (hours > 0) ? String.format("%dh%02d", hours, minutes) : minutes + " min";
     }
 
     /**
-     * Updates the UI for the next delivery waypoint, fetching simple
-     * distance and duration info via {@link GoogleMapsServices}.
+     * Updates the UI for the next delivery waypoint from the current {@link RouteState}:
+     * the distance and duration of the current leg are already known, so no request is made.
      */
     public void updateNextRoute() {
-        if (mapViewModel.getWaypoints() == null || waypointOrder == null || waypointOrder.isEmpty()) return;
+        RouteState routeState = mapViewModel.getRouteState();
+        if (mapViewModel.getWaypoints() == null || routeState == null) return;
 
-        List<Colis> colisList = colisViewModel.getColis().getValue();
+        List<Colis> colisList = colisViewModel.getSnapshot().getColis();
 
-        if (colisList == null || colisList.isEmpty() || currentWaypointIndex >= waypointOrder.size()) {
+        if (colisList == null || colisList.isEmpty() || routeState.isFinished()) {
             Log.i("Delivery", "Plus de colis à livrer");
             tvName.setText("Aucun colis");
             tvAdress.setText("Fin de tournée");
@@ -296,11 +420,13 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
             tvStopsRemaining.setText("0");
             tvDistanceRemaining.setText("0 km");
             tvTimeRemaining.setText("0 min");
+            locationRepository.setNextStop(null);
             showEndOfTourDialog();
             return;
         }
 
-        int colisIndex = waypointOrder.get(currentWaypointIndex);
+        int colisIndex = routeState.getCurrentStop();
+        locationRepository.setNextStop(mapViewModel.getWaypoints().get(colisIndex));
 
         if (colisIndex < colisList.size()) {
             Colis prochainColis = colisList.get(colisIndex);
@@ -311,45 +437,10 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
             return;
         }
 
-        if (ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(requireActivity(), new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 1);
-            return;
-        }
-
-        fusedLocationProviderClient.getLastLocation().addOnSuccessListener(location -> {
-            if (location != null) {
-                LatLng userLocation = new LatLng(location.getLatitude(), location.getLongitude());
-                LatLng destination = mapViewModel.getWaypoints().get(waypointOrder.get(currentWaypointIndex));
-
-                GoogleMapsServices mapsServices = new GoogleMapsServices(BuildConfig.MAPS_API_KEY);
-                mapsServices.fetchSimpleDirection(userLocation, destination, new GoogleMapsServices.SimpleDirectionCallback() {
-                    @Override
-                    public void onDirectionFetched(int distanceInMeters, int durationInSeconds) {
-                        requireActivity().runOnUiThread(() -> {
-                            String distanceText = String.format("%.1f km", distanceInMeters / 1000.0);
-                            tvDistance.setText(distanceText);
-
-                            int hours = durationInSeconds / 3600;
-                            int minutes = (durationInSeconds % 3600) / 60;
-
-                            String durationText = (hours > 0)
-                                    ? String.format("%dh%02d", hours, minutes)
-                                    : minutes + " min";
-
-                            tvDuration.setText(durationText);
-                        });
-                    }
-
-                    @Override
-                    public void onError(String message) {
-                        Log.e("Maps", "Erreur direction simple : " + message);
-                    }
-                });
-            }
-        });
+        tvDistance.setText(formatDistance(routeState.getCurrentLegDistance()));
+        tvDuration.setText(formatDuration(routeState.getCurrentLegDuration()));
     }
 
-
     /**
      * Launches Google Maps navigation intent to the specified destination coordinate.
      *
@@ -368,22 +459,41 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Validates the scanned QR content against the expected package number
-     * and either shows an action dialog or an error toast.
+     * Validates the scanned QR content against the whole tour and either shows an
+     * action dialog or an error toast.
+     * <p>
+     * Any package of the tour that is still to deliver is accepted, not only the one of
+     * the current stop, so neighbours can be delivered out of order. The check is a lookup
+     * in the index of the tour and in the visiting order, with no network call.
+     * </p>
      *
      * @param qrContent the scanned QR code content as a string
      */
     private void checkPackageScan(String qrContent) {
-        List<Colis> colisList = colisViewModel.getColis().getValue();
-        if (colisList == null || waypointOrder == null || currentWaypointIndex >= waypointOrder.size()) return;
+        TourSnapshot snapshot = colisViewModel.getSnapshot();
+        RouteState routeState = mapViewModel.getRouteState();
+        if (routeState == null) {
+            // Le scan est à refaire une fois l'itinéraire reçu
+            Toast.makeText(requireContext(), "Itinéraire en cours de calcul", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (routeState.isFinished()) return;
 
-        int indexColis = waypointOrder.get(currentWaypointIndex);
-        Colis colisAttendu = colisList.get(indexColis);
+        int number;
+        try {
+            number = Integer.parseInt(qrContent.trim());
+        } catch (NumberFormatException e) {
+            Toast.makeText(requireContext(), "QR code invalide", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        if (qrContent.equals(String.valueOf(colisAttendu.getNumber()))) {
-            afficherPopupActionColis(colisAttendu);
+        int stopIndex = snapshot.indexOf(number);
+        if (stopIndex < 0) {
+            Toast.makeText(requireContext(), "Ce colis ne fait pas partie de la tournée", Toast.LENGTH_SHORT).show();
+        } else if (routeState.positionOf(stopIndex) < routeState.getCompletedStops()) {
+            Toast.makeText(requireContext(), "Ce colis a déjà été traité", Toast.LENGTH_SHORT).show();
         } else {
-            Toast.makeText(requireContext(), "Ce n’est pas le bon colis", Toast.LENGTH_SHORT).show();
+            afficherPopupActionColis(snapshot.getColis().get(stopIndex), stopIndex);
         }
     }
 
@@ -391,59 +501,52 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
      * Shows a confirmation dialog allowing the user to mark the package
      * as delivered or absent.
      *
-     * @param colis the {@link Colis} being confirmed
+     * @param colis     the {@link Colis} being confirmed
+     * @param stopIndex the index of its stop in the waypoints of the route
      */
-    private void afficherPopupActionColis(Colis colis) {
+    private void afficherPopupActionColis(Colis colis, int stopIndex) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Confirmer la livraison")
                 .setMessage("Que souhaitez-vous faire pour ce colis ?")
-                .setNeutralButton("Client absent", (dialog, which) -> updateDeliveryStatus(colis, 3))
-                .setPositiveButton("Colis livré", (dialog, which) -> updateDeliveryStatus(colis, 2))
+                .setNeutralButton("Client absent", (dialog, which) -> updateDeliveryStatus(colis, stopIndex, 3))
+                .setPositiveButton("Colis livré", (dialog, which) -> updateDeliveryStatus(colis, stopIndex, 2))
                 .show();
     }
 
     /**
-     * Removes the delivered package from the list, refreshes waypoints and route,
-     * and resets the current waypoint index.
+     * Completes the stop of a package and moves on to the next one.
+     * <p>
+     * The package stays in the list (with its new status) so that the indices of the
+     * route remain valid. For the current stop, the remaining route is redrawn from the
+     * legs already fetched, without any request; for another stop, the stops left are
+     * re-sequenced locally and the new route is fetched in the background.
+     * </p>
      *
-     * @param colis the {@link Colis} that was delivered or marked absent
+     * @param stopIndex the index of the completed stop in the waypoints of the route
      */
-    private void retirerWaypointEtRaffraichir(Colis colis) {
-        List<Colis> colisList = new ArrayList<>(colisViewModel.getColis().getValue());
-        colisList.removeIf(c -> c.getNumber() == colis.getNumber());
-        colisViewModel.setColis(colisList);
-
-        currentWaypointIndex = 0;
-        List<LatLng> newWaypoints = new ArrayList<>();
-        for (Colis c : colisList) {
-            newWaypoints.add(new LatLng(c.getLatitude(), c.getLongitude()));
-        }
-        mapViewModel.setWaypoints(newWaypoints);
-        mapViewModel.fetchDirectionsFromService(userLocation, startingLocation);
+    private void passerAuColisSuivant(int stopIndex) {
+        if (!mapViewModel.completeStop(stopIndex)) return;
 
+        updateRouteInfo(mapViewModel.getRouteState());
         updateNextRoute();
+        trackProgress();
+        refreshProgress();
     }
 
     /**
-     * Calls the Amazi API to update the delivery status of a package,
-     * then on success removes it and refreshes the route.
+     * Applies the new delivery status of a package locally, records it in the
+     * {@link DeliveryOutbox} (sent to the Amazi API in the background, even if the
+     * network is currently unavailable), then moves on to the next stop.
      *
-     * @param colis  the {@link Colis} whose status is being updated
-     * @param statut the new status string to send ("LIVRE" or "ABSENT")
+     * @param colis     the {@link Colis} whose status is being updated
+     * @param stopIndex the index of its stop in the waypoints of the route
+     * @param statut    the new status (2=Delivered/3=Absent)
      */
-    private void updateDeliveryStatus(Colis colis, int statut) {
-        new AmaziServices(TokenHolder.getToken()).updateDeliveryStatus(DeliveryIdHolder.getDeliveryId(), colis.getNumber(), "mail@mail.mail" /*TODO: Utiliser le vrai ID du livreur*/, statut, new AmaziServices.StatutCallback() {
-            @Override
-            public void onSuccess() {
-                requireActivity().runOnUiThread(() -> retirerWaypointEtRaffraichir(colis));
-            }
-
-            @Override
-            public void onError(String message) {
-                requireActivity().runOnUiThread(() ->
-                        Toast.makeText(requireContext(), "Erreur : " + message, Toast.LENGTH_SHORT).show());
-            }
-        });
+    private void updateDeliveryStatus(Colis colis, int stopIndex, int statut) {
+        colisViewModel.updateStatus(colis.getNumber(), statut);
+        DeliveryOutbox.getInstance(requireContext()).enqueue(OutboxEntry.statusUpdate(
+                DeliveryIdHolder.getDeliveryId(), colis.getNumber(), CourierIdHolder.getCourierId(), statut));
+        passerAuColisSuivant(stopIndex);
     }
 
     /**
@@ -470,6 +573,7 @@ public class DeliveryFragment extends Fragment implements OnMapReadyCallback {
                 .setTitle("Fin de tournée")
                 .setMessage("Votre tournée est terminée.\n")
                 .setPositiveButton("Déconnexion", (dialog, which) -> {
+                    TourSession.getInstance(requireContext()).end();
                     Intent intent = new Intent(requireActivity(), LoginActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
@@ -24,8 +24,10 @@ import java.util.Arrays;
 import java.util.List;
 
 import data.model.Colis;
+import data.tour.TourSession;
 import ui.ColisViewModel;
 import ui.ColisAdapter;
+import ui.SharedViewPools;
 import ui.login.LoginActivity;
 import ui.main.MainActivity;
 
@@ -95,6 +97,7 @@ public class ListFragment extends Fragment {
                     .setPositiveButton("Oui, déconnecter", new DialogInterface.OnClickListener() {
                         @Override
                         public void onClick(DialogInterface dialog, int which) {
+                            TourSession.getInstance(requireContext()).end();
                             Intent intent = new Intent(requireActivity(), LoginActivity.class);
                             intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_ACTIVITY_NEW_TASK);
                             startActivity(intent);
@@ -110,7 +113,10 @@ public class ListFragment extends Fragment {
         // Set up RecyclerView and its adapter
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view);
         adapter = new ColisAdapter(null);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setRecycledViewPool(SharedViewPools.forActivity(requireActivity()));
         recyclerView.setAdapter(adapter);
 
         // Filter buttons
@@ -18,32 +18,30 @@ import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.ImageView;
-import android.widget.Toast;
 
-import com.example.app_cll_livreur.BuildConfig;
 import com.example.app_cll_livreur.R;
 import com.google.android.material.snackbar.Snackbar;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
-import data.api.amazi.AmaziServices;
-import data.controller.ColisController;
 import data.model.Colis;
+import data.outbox.DeliveryOutbox;
+import data.outbox.OutboxEntry;
+import data.tour.TourSession;
 import ui.ColisAdapter;
 import ui.ColisViewModel;
+import ui.CourierIdHolder;
 import ui.DeliveryIdHolder;
 import ui.delivery.DeliveryActivity;
 import ui.QrCodeFragment;
+import ui.SharedViewPools;
 import ui.login.LoginActivity;
-import utils.TokenHolder;
 
 /**
  * Fragment that displays the home screen with the list of packages (Colis).
@@ -86,7 +84,10 @@ public class HomeFragment extends Fragment {
 
         // Configure RecyclerView and its adapter
         recyclerView = view.findViewById(R.id.rv_colis);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setRecycledViewPool(SharedViewPools.forActivity(requireActivity()));
         colisList = new ArrayList<>();
         adapter = new ColisAdapter(colisList);
         recyclerView.setAdapter(adapter);
@@ -108,6 +109,7 @@ public class HomeFragment extends Fragment {
         // Logout button navigates back to LoginActivity
         ImageView btnGoToLoginActivity = view.findViewById(R.id.btn_logout);
         btnGoToLoginActivity.setOnClickListener(v -> {
+            TourSession.getInstance(requireContext()).end();
             Intent intent = new Intent(requireActivity(), LoginActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_ACTIVITY_NEW_TASK);
             startActivity(intent);
@@ -124,18 +126,16 @@ public class HomeFragment extends Fragment {
             transaction.commit();
         });
 
-        // Button to launch the delivery activity with the current package list
+        // Button to launch the delivery activity, which picks up the tour from the TourSession
         Button btnGoToDeliveryFragment = view.findViewById(R.id.btn_delivery);
         btnGoToDeliveryFragment.setOnClickListener(v -> {
             Intent intent = new Intent(requireContext(), DeliveryActivity.class);
-            ArrayList<Colis> colisList = new ArrayList<>(colisViewModel.getColis().getValue());
-            intent.putParcelableArrayListExtra("colis_list", colisList);
             intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_ACTIVITY_NEW_TASK);
             startActivity(intent);
             requireActivity().finish();
         });
 
-        // Button to initiate QR code scan for adding a new package
+        // Button to open the scanner, which adds each scanned package to the tour
         ImageView btnScanQR = view.findViewById(R.id.btn_add);
         btnScanQR.setOnClickListener(v -> {
             getParentFragmentManager()
@@ -145,31 +145,6 @@ public class HomeFragment extends Fragment {
                     .commit();
         });
 
-        // Listen for QR scan results and process the scanned package
-        getParentFragmentManager().setFragmentResultListener(
-                "qr_scan",
-                getViewLifecycleOwner(),
-                (requestKey, bundle) -> {
-                    int qrContent = Integer.parseInt(Objects.requireNonNull(bundle.getString("qr_result")));
-
-                    ColisController controller = new ColisController(requireContext(), BuildConfig.MAPS_API_KEY);
-                    controller.traiterColisDepuisQRCode(qrContent, new ColisController.ColisCallback() {
-                        @Override
-                        public void onColisReady(Colis colis) {
-                            colisViewModel.addColis(colis);
-                            updateDeliveryStatus(colis, 1);
-                            Toast.makeText(getContext(), "Colis ajouté : Id " + colis.getNumber(), Toast.LENGTH_SHORT).show();
-                        }
-
-                        @Override
-                        public void onError(String message) {
-                            Toast.makeText(getContext(), "Erreur : " + message, Toast.LENGTH_SHORT).show();
-                            Log.d("Maps", "Erreur : " + message);
-                        }
-                    });
-
-                });
-
         return view;
     }
 
@@ -192,7 +167,7 @@ public class HomeFragment extends Fragment {
 
                 Colis deletedColis = adapter.getColisAt(position);
                 if (deletedColis == null) {
-                    adapter.notifyDataSetChanged();
+                    adapter.notifyItemChanged(position);
                     return;
                 }
 
@@ -202,8 +177,7 @@ public class HomeFragment extends Fragment {
 
                 Snackbar.make(recyclerView, "Colis supprimé", Snackbar.LENGTH_LONG)
                         .setAction("Annuler", v -> {
-                            colisViewModel.addColis(deletedColis);
-                            updateDeliveryStatus(deletedColis, 1);
+                            colisViewModel.addColis(updateDeliveryStatus(deletedColis, 1));
                         })
                         .show();
             }
@@ -258,35 +232,25 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Calls the Amazi API to update the delivery status of a package,
-     * then on success removes it and refreshes the route.
+     * Applies the new delivery status of a package locally and records it in the
+     * {@link DeliveryOutbox}, which sends it to the Amazi API in the background.
      *
      * @param colis  the {@link Colis} whose status is being updated
-     * @param status the new status string to send ("LIVRE" or "ABSENT")
+     * @param status the new status (1=Ongoing/2=Delivered/3=Absent)
+     * @return the package with its new status
      */
-    private void updateDeliveryStatus(Colis colis, int status) {
-        new AmaziServices(TokenHolder.getToken()).updateDeliveryStatus(DeliveryIdHolder.getDeliveryId(), colis.getNumber(), "mail@mail.mail" /*TODO: Utiliser le vrai ID du livreur*/, status, new AmaziServices.StatutCallback() {
-            @Override
-            public void onSuccess() { }
-
-            @Override
-            public void onError(String message) {
-                requireActivity().runOnUiThread(() ->
-                        Toast.makeText(requireContext(), "Erreur : " + message, Toast.LENGTH_SHORT).show());
-            }
-        });
+    private Colis updateDeliveryStatus(Colis colis, int status) {
+        DeliveryOutbox.getInstance(requireContext()).enqueue(OutboxEntry.statusUpdate(
+                DeliveryIdHolder.getDeliveryId(), colis.getNumber(), CourierIdHolder.getCourierId(), status));
+        return colis.withStatus(status);
     }
 
+    /**
+     * Records the removal of a package in the {@link DeliveryOutbox}.
+     *
+     * @param colisId the ID of the removed package
+     */
     private void deleteColis(int colisId) {
-        new AmaziServices(TokenHolder.getToken()).deleteColis(DeliveryIdHolder.getDeliveryId(), colisId, new AmaziServices.DeleteCallback() {
-            @Override
-            public void onSuccess() {
-                // mettre à jour l’affichage, retirer le colis localement…
-            }
-            @Override
-            public void onError(String message) {
-                Toast.makeText(requireContext(), "Suppression impossible : " + message, Toast.LENGTH_LONG).show();
-            }
-        });
+        DeliveryOutbox.getInstance(requireContext()).enqueue(OutboxEntry.deletion(DeliveryIdHolder.getDeliveryId(), colisId));
     }
 }
\ No newline at end of file
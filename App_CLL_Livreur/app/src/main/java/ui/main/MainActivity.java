@@ -7,7 +7,10 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.app_cll_livreur.R;
 
+import data.outbox.DeliveryOutbox;
 import ui.DeliveryIdHolder;
+import utils.MarkerIconCache;
+import utils.StartupWarmUp;
 
 
 /**
@@ -22,6 +25,11 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         DeliveryIdHolder.setDeliveryId();
+        // Resume sending the operations left pending by a previous session
+        DeliveryOutbox.getInstance(this);
+        MarkerIconCache.getInstance().attach(this);
+        // Warm up the camera, the scanner, the map and the connections before their first use
+        StartupWarmUp.start(this);
 
         if (savedInstanceState == null) {
             getSupportFragmentManager().beginTransaction()
@@ -1,7 +1,5 @@
 package ui.main;
 
-import static utils.MapUtils.addUserMarker;
-
 import android.os.Bundle;
 import android.util.Log;
 
@@ -17,8 +15,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.app_cll_livreur.R;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -28,12 +24,13 @@ import com.google.android.gms.maps.model.LatLng;
 import java.util.ArrayList;
 import java.util.List;
 
-import data.model.DirectionsResponse;
+import data.location.LocationRepository;
 import data.model.Colis;
 import ui.ColisViewModel;
 import ui.MapViewModel;
 import utils.LocationUtils;
-import utils.MapUtils;
+import utils.MapSceneManager;
+import utils.RouteGeometry;
 
 /**
  * Fragment that displays a Google Map showing the user's location and the delivery route.
@@ -46,8 +43,9 @@ import utils.MapUtils;
 public class MapFragment extends Fragment implements OnMapReadyCallback {
     private GoogleMap mMap;
     private MapViewModel mapViewModel;
-    private FusedLocationProviderClient fusedLocationProviderClient;
+    private LocationRepository locationRepository;
     private LatLng userLocation;
+    private MapSceneManager mapScene;
     TextView tvParcelCount;
 
     /** Default empty constructor required for fragment instantiation. */
@@ -59,7 +57,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(requireActivity());
+        locationRepository = LocationRepository.getInstance(requireContext());
         mapViewModel = new ViewModelProvider(requireActivity()).get(MapViewModel.class);
     }
 
@@ -93,10 +91,20 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         return view;
     }
 
+    /**
+     * Restarts the shared location stream in case the permission was granted
+     * while this fragment was paused.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        locationRepository.refresh();
+    }
+
     /**
      * Called when the GoogleMap is ready to be used.
      * <p>
-     * Requests the user's current location, observes route updates,
+     * Observes the user's position and route updates,
      * and logs map readiness.
      * </p>
      *
@@ -105,20 +113,25 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
-        getUserLocation();
+        mapScene = new MapSceneManager(requireContext(), mMap);
+        LocationUtils.ensureLocationPermission(this);
+        locationRepository.getLocation().observe(getViewLifecycleOwner(),
+                fix -> onUserLocation(LocationRepository.toLatLng(fix)));
 
         if (mapViewModel.getWaypoints() == null || mapViewModel.getWaypoints().isEmpty()) {
             Log.w("CLL-MapFragment", "drawRoute: no waypoints to display.");
         }
 
-        mapViewModel.getRouteLiveData().observe(getViewLifecycleOwner(), this::drawRoute);
+        mapViewModel.getRouteGeometry().observe(getViewLifecycleOwner(), this::drawRoute);
+        mMap.setOnCameraIdleListener(() -> mapScene.onCameraIdle(mMap.getCameraPosition().zoom));
 
         Log.d("CLL-MapFragment", "Google Map is ready.");
     }
 
     /**
      * Observes changes to the parcel list in the given {@link ColisViewModel},
-     * updates map waypoints, clears any existing route, and updates the display.
+     * updates map waypoints, and updates the display. The route is requested again only
+     * if the waypoints changed; the previous one stays on screen until then.
      *
      * @param colisViewModel the {@link ColisViewModel} providing the parcel list
      */
@@ -131,10 +144,9 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
                 waypoints.add(new LatLng(colis.getLatitude(), colis.getLongitude()));
             }
             mapViewModel.setWaypoints(waypoints);
-            mapViewModel.clearRoute();
 
-            if (mMap != null) {
-                getUserLocation();
+            if (userLocation != null) {
+                mapViewModel.fetchDirectionsFromService(userLocation, userLocation);
             }
 
             int parcelNumber = colisList.size();
@@ -156,42 +168,37 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
 
     /**
-     * Retrieves the user's current location, centers the map on it,
-     * adds a user marker, and requests initial route calculation.
+     * Handles a new position from the shared {@link LocationRepository}: moves the
+     * user marker, and on the first fix centers the map and requests the route.
+     *
+     * @param latLng the user's position
      */
-    private void getUserLocation() {
-        LocationUtils.fetchUserLocation(this, fusedLocationProviderClient,
-                latLng -> {
-                    userLocation = latLng;
-                    mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(userLocation, 12));
-                    addUserMarker(mMap, userLocation, getResources(), R.drawable.ic_street_view);
-                    mapViewModel.fetchDirectionsFromService(userLocation, userLocation);
-                },
-                errorMsg -> Log.e("CLL-MapFragment", errorMsg)
-        );
+    private void onUserLocation(LatLng latLng) {
+        boolean firstFix = userLocation == null;
+        userLocation = latLng;
+        mapScene.updateUserLocation(latLng, getResources(), R.drawable.ic_street_view);
+
+        if (firstFix) {
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 12));
+            mapViewModel.fetchDirectionsFromService(userLocation, userLocation);
+        }
     }
 
     /**
-     * Draws the route on the map using the provided {@link DirectionsResponse}.
-     * Logs if no routes are available or confirms the number of routes drawn.
+     * Draws the route on the map from a {@link RouteGeometry} prepared off the main
+     * thread, at the level of detail matching the current zoom. The {@link MapSceneManager}
+     * only updates the markers and polyline points that changed; while a new route is
+     * being fetched (null geometry), the previous one stays on screen.
      *
-     * @param response the {@link DirectionsResponse} containing route data
+     * @param geometry the {@link RouteGeometry} to draw
      */
-    private void drawRoute(DirectionsResponse response) {
-        MapUtils.drawRouteOnMap(
-                mMap,
-                response,
-                mapViewModel.getWaypoints(),
-                getResources(),
-                R.drawable.ic_street_view,
-                userLocation
-        );
-
-        if (response == null || response.getRoutes().isEmpty()) {
-            Log.w("CLL-MapFragment", "No routes received to draw.");
-        } else {
-            Log.d("CLL-MapFragment", "Drawing route with " + response.getRoutes().size() + " route(s).");
+    private void drawRoute(RouteGeometry geometry) {
+        if (geometry == null) {
+            Log.d("CLL-MapFragment", "Route cleared, waiting for the new one.");
+            return;
         }
 
+        mapScene.showRoute(geometry, mapViewModel.getWaypoints(), mMap.getCameraPosition().zoom);
+        Log.d("CLL-MapFragment", "Drawing route with " + geometry.getRoute().getLegCount() + " leg(s).");
     }
-}
\ No newline at end of file
+}
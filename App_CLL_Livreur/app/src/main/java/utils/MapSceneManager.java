@@ -0,0 +1,249 @@
+package utils;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.util.Log;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import data.model.CompactRoute;
+
+/**
+ * Keeps the objects drawn on a {@link GoogleMap} (route polyline, numbered stop markers,
+ * user marker) and updates them in place.
+ * <p>
+ * Instead of clearing the map and drawing everything again, {@link #showRoute} diffs the
+ * new stop order against the markers already on the map: markers are keyed by stop
+ * position, so only the stops that appeared, disappeared or changed number are touched.
+ * Completing a delivery therefore removes one marker, and the polyline only gets new
+ * points. The user marker is moved rather than re-added.
+ * </p>
+ * <p>
+ * Tours of more than {@link #CLUSTERING_THRESHOLD} stops are drawn through a
+ * {@link StopClusterLayer} instead: stops are clustered at low zoom and only those
+ * around the visible region get a marker, keeping the waypoint order numbering.
+ * </p>
+ * <p>
+ * One instance per map; all methods must be called from the main thread.
+ * </p>
+ */
+public final class MapSceneManager {
+
+    private static final String TAG = "MapSceneManager";
+    private static final int USER_ICON_SIZE = 100;
+
+    /** Number of stops above which stops are clustered and culled to the viewport. */
+    public static final int CLUSTERING_THRESHOLD = 40;
+
+    private final Context context;
+    private final GoogleMap map;
+    private StopClusterLayer clusterLayer;
+    private final Map<StopKey, StopMarker> stopMarkers = new HashMap<>();
+    private Polyline routePolyline;
+    private Marker userMarker;
+    private RouteGeometry geometry;
+    private int detailLevel;
+
+    /** Identifies a stop by its position and, for stops sharing a position, its rank. */
+    static final class StopKey {
+        final LatLng position;
+        final int occurrence;
+
+        StopKey(LatLng position, int occurrence) {
+            this.position = position;
+            this.occurrence = occurrence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StopKey)) return false;
+            StopKey other = (StopKey) o;
+            return occurrence == other.occurrence && position.equals(other.position);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position, occurrence);
+        }
+    }
+
+    /** A marker on the map with the number it currently shows. */
+    private static final class StopMarker {
+        final Marker marker;
+        int number;
+
+        StopMarker(Marker marker, int number) {
+            this.marker = marker;
+            this.number = number;
+        }
+    }
+
+    /**
+     * @param context the context of the map's host, used by the clustering renderer
+     * @param map     the map to draw on
+     */
+    public MapSceneManager(Context context, GoogleMap map) {
+        this.context = context;
+        this.map = map;
+    }
+
+    /**
+     * Brings the route polyline and the stop markers in line with a prepared route.
+     *
+     * @param geometry  the {@link RouteGeometry} of the remaining route
+     * @param waypoints the stop positions the route's waypoint order refers to
+     * @param zoom      the current camera zoom, to pick the level of detail
+     */
+    public void showRoute(RouteGeometry geometry, List<LatLng> waypoints, float zoom) {
+        this.geometry = geometry;
+        if (geometry == null) {
+            clearRoute();
+            return;
+        }
+
+        detailLevel = geometry.levelForZoom(zoom);
+        List<LatLng> points = geometry.getPoints(detailLevel);
+        if (routePolyline == null) {
+            routePolyline = map.addPolyline(new PolylineOptions()
+                    .addAll(points)
+                    .width(10)
+                    .color(Color.BLUE));
+        } else {
+            routePolyline.setPoints(points);
+        }
+
+        updateStopMarkers(geometry.getRoute(), geometry.getFirstLeg(), waypoints);
+    }
+
+    /**
+     * Swaps the polyline to the level of detail matching the zoom, if it changed,
+     * and refreshes the clustered stops for the new viewport.
+     * Meant for the camera idle listener.
+     *
+     * @param zoom the camera zoom
+     */
+    public void onCameraIdle(float zoom) {
+        if (clusterLayer != null) {
+            clusterLayer.onCameraIdle(zoom);
+        }
+        if (routePolyline == null || geometry == null) return;
+
+        int level = geometry.levelForZoom(zoom);
+        if (level != detailLevel) {
+            detailLevel = level;
+            routePolyline.setPoints(geometry.getPoints(level));
+        }
+    }
+
+    /**
+     * Shows the user at the given position, moving the existing marker if there is one.
+     *
+     * @param position    the user's position
+     * @param res         the {@link Resources} to load the icon from
+     * @param drawableRes the resource ID of the user icon
+     */
+    public void updateUserLocation(LatLng position, Resources res, int drawableRes) {
+        if (position == null) return;
+
+        if (userMarker == null) {
+            userMarker = map.addMarker(new MarkerOptions()
+                    .position(position)
+                    .title("Votre position")
+                    .icon(MarkerIconCache.getInstance().getIcon(res, drawableRes, USER_ICON_SIZE, USER_ICON_SIZE)));
+        } else if (!position.equals(userMarker.getPosition())) {
+            userMarker.setPosition(position);
+        }
+    }
+
+    /** Removes the route polyline and every stop marker, keeping the user marker. */
+    public void clearRoute() {
+        if (routePolyline != null) {
+            routePolyline.remove();
+            routePolyline = null;
+        }
+        clearStopMarkers();
+        if (clusterLayer != null) {
+            clusterLayer.clear();
+        }
+    }
+
+    private void clearStopMarkers() {
+        for (StopMarker stop : stopMarkers.values()) {
+            stop.marker.remove();
+        }
+        stopMarkers.clear();
+    }
+
+    private void updateStopMarkers(CompactRoute route, int firstStop, List<LatLng> waypoints) {
+        Map<StopKey, Integer> wanted = new HashMap<>();
+        Map<LatLng, Integer> occurrences = new HashMap<>();
+        for (int i = firstStop; i < route.getWaypointCount(); i++) {
+            int waypoint = route.getWaypoint(i);
+            if (waypoints == null || waypoint >= waypoints.size()) continue;
+            LatLng position = waypoints.get(waypoint);
+            Integer seen = occurrences.get(position);
+            int occurrence = seen == null ? 0 : seen + 1;
+            occurrences.put(position, occurrence);
+            wanted.put(new StopKey(position, occurrence), i + 1);
+        }
+
+        if (wanted.size() > CLUSTERING_THRESHOLD) {
+            clearStopMarkers();
+            if (clusterLayer == null) {
+                clusterLayer = new StopClusterLayer(context, map);
+            }
+            clusterLayer.setStops(wanted);
+            return;
+        }
+        if (clusterLayer != null) {
+            clusterLayer.clear();
+        }
+
+        int removed = 0;
+        Iterator<Map.Entry<StopKey, StopMarker>> it = stopMarkers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<StopKey, StopMarker> entry = it.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                entry.getValue().marker.remove();
+                it.remove();
+                removed++;
+            }
+        }
+
+        int added = 0;
+        int updated = 0;
+        for (Map.Entry<StopKey, Integer> entry : wanted.entrySet()) {
+            int number = entry.getValue();
+            StopMarker stop = stopMarkers.get(entry.getKey());
+            if (stop == null) {
+                Marker marker = map.addMarker(new MarkerOptions()
+                        .position(entry.getKey().position)
+                        .title("Arrêt " + number)
+                        .icon(MapUtils.createPinMarker(number)));
+                if (marker == null) continue;
+                stopMarkers.put(entry.getKey(), new StopMarker(marker, number));
+                added++;
+            } else if (stop.number != number) {
+                stop.marker.setIcon(MapUtils.createPinMarker(number));
+                stop.marker.setTitle("Arrêt " + number);
+                stop.number = number;
+                updated++;
+            }
+        }
+
+        Log.d(TAG, "Marqueurs : " + added + " ajoutés, " + removed + " retirés, " + updated + " renumérotés");
+    }
+}
@@ -0,0 +1,201 @@
+package utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Typeface;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+/**
+ * App-wide cache of the marker icons drawn on the maps.
+ * <p>
+ * Numbered pins are rendered once per number and color, and icons loaded from
+ * drawables are decoded and scaled once per size, then kept as {@link BitmapDescriptor}s
+ * in an {@link LruCache} bounded by a memory budget ({@link #MAX_BUDGET_BYTES} at most).
+ * Pins are rendered with shared {@link Paint}s and {@link Path}; like every marker
+ * operation, this happens on the main thread only.
+ * </p>
+ * <p>
+ * Once {@link #attach attached}, the cache is halved when the app leaves the screen
+ * ({@code TRIM_MEMORY_UI_HIDDEN}) and emptied once the app is in the background LRU
+ * list ({@code TRIM_MEMORY_BACKGROUND} and above), the levels still delivered on recent
+ * Android versions.
+ * </p>
+ */
+public final class MarkerIconCache implements ComponentCallbacks2 {
+
+    private static final String TAG = "MarkerIconCache";
+
+    /** Upper bound of the cache, in bytes of bitmap memory. */
+    private static final int MAX_BUDGET_BYTES = 16 * 1024 * 1024;
+
+    private static final int PIN_WIDTH = 100;
+    private static final int PIN_HEIGHT = 200;
+    private static final float STEM_WIDTH = 12;
+    private static final float STEM_HEIGHT = 60;
+    private static final float TIP_HEIGHT = 20;
+
+    private static volatile MarkerIconCache instance;
+
+    private final LruCache<String, Entry> cache;
+    private final Paint pinPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path tipPath = new Path();
+    private boolean attached;
+
+    /** A cached descriptor with the size of the bitmap behind it. */
+    private static final class Entry {
+        final BitmapDescriptor descriptor;
+        final int byteCount;
+
+        Entry(BitmapDescriptor descriptor, int byteCount) {
+            this.descriptor = descriptor;
+            this.byteCount = byteCount;
+        }
+    }
+
+    private MarkerIconCache() {
+        int budget = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_BUDGET_BYTES);
+        cache = new LruCache<String, Entry>(budget) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.byteCount;
+            }
+        };
+
+        pinPaint.setColor(Color.GRAY);
+        pinPaint.setStyle(Paint.Style.FILL);
+        circlePaint.setStyle(Paint.Style.FILL);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(40);
+        textPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+
+        float stemX = PIN_WIDTH / 2f - (STEM_WIDTH / 2);
+        float stemYBottom = PIN_HEIGHT - TIP_HEIGHT;
+        tipPath.moveTo(PIN_WIDTH / 2f, PIN_HEIGHT);
+        tipPath.lineTo(stemX, stemYBottom);
+        tipPath.lineTo(stemX + STEM_WIDTH, stemYBottom);
+        tipPath.close();
+    }
+
+    /**
+     * Returns the app-wide marker icon cache.
+     *
+     * @return the shared {@link MarkerIconCache} instance
+     */
+    public static MarkerIconCache getInstance() {
+        if (instance == null) {
+            synchronized (MarkerIconCache.class) {
+                if (instance == null) {
+                    instance = new MarkerIconCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the cache for memory pressure callbacks; later calls do nothing.
+     *
+     * @param context any context of the app
+     */
+    public synchronized void attach(Context context) {
+        if (attached) return;
+        context.getApplicationContext().registerComponentCallbacks(this);
+        attached = true;
+    }
+
+    /**
+     * Returns a numbered pin: a colored circle holding the number, on a gray stem.
+     *
+     * @param number the number to display on the pin
+     * @param color  the color of the circle
+     * @return the cached or newly rendered {@link BitmapDescriptor}
+     */
+    public BitmapDescriptor getPin(int number, int color) {
+        String key = "pin:" + color + ":" + number;
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            Bitmap bitmap = renderPin(number, color);
+            entry = new Entry(BitmapDescriptorFactory.fromBitmap(bitmap), bitmap.getByteCount());
+            cache.put(key, entry);
+        }
+        return entry.descriptor;
+    }
+
+    /**
+     * Returns a drawable resource scaled to the given size.
+     *
+     * @param res         the {@link Resources} to load the drawable from
+     * @param drawableRes the resource ID of the drawable
+     * @param width       the target width in pixels
+     * @param height      the target height in pixels
+     * @return the cached or newly scaled {@link BitmapDescriptor}
+     */
+    public BitmapDescriptor getIcon(Resources res, int drawableRes, int width, int height) {
+        String key = "icon:" + drawableRes + ":" + width + "x" + height;
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            Bitmap source = BitmapFactory.decodeResource(res, drawableRes);
+            Bitmap scaled = Bitmap.createScaledBitmap(source, width, height, false);
+            if (scaled != source) {
+                source.recycle();
+            }
+            entry = new Entry(BitmapDescriptorFactory.fromBitmap(scaled), scaled.getByteCount());
+            cache.put(key, entry);
+        }
+        return entry.descriptor;
+    }
+
+    private Bitmap renderPin(int number, int color) {
+        Bitmap bitmap = Bitmap.createBitmap(PIN_WIDTH, PIN_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        float stemX = PIN_WIDTH / 2f - (STEM_WIDTH / 2);
+        float stemYTop = PIN_HEIGHT - STEM_HEIGHT - TIP_HEIGHT;
+        float stemYBottom = PIN_HEIGHT - TIP_HEIGHT;
+        canvas.drawRect(stemX, stemYTop, stemX + STEM_WIDTH, stemYBottom, pinPaint);
+        canvas.drawPath(tipPath, pinPaint);
+
+        circlePaint.setColor(color);
+        canvas.drawCircle(PIN_WIDTH / 2f, stemYTop, PIN_WIDTH / 3f, circlePaint);
+
+        float y = stemYTop - ((textPaint.ascent() + textPaint.descent()) / 2);
+        canvas.drawText(String.valueOf(number), PIN_WIDTH / 2f, y, textPaint);
+        return bitmap;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            Log.d(TAG, "Application en arrière-plan (niveau " + level + ") : cache vidé");
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            Log.d(TAG, "Interface masquée (niveau " + level + ") : cache réduit de moitié");
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        cache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) { }
+}
@@ -0,0 +1,120 @@
+package utils;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import data.model.CompactRoute;
+import route.PolylineSimplifier;
+
+/**
+ * Ready-to-draw geometry of the remaining part of a route, at several levels of detail.
+ * <p>
+ * Built off the main thread (see {@link #prepare}): the points of the route are
+ * simplified with Douglas-Peucker at each tolerance of {@link #TOLERANCES_M} and turned
+ * into {@link LatLng} lists, so the main thread only hands one of them to the map.
+ * {@link #levelForZoom} picks the coarsest level whose tolerance stays under one screen
+ * pixel at the current zoom.
+ * </p>
+ */
+public final class RouteGeometry {
+
+    /** Simplification tolerance of each level of detail, in meters, finest first. */
+    static final double[] TOLERANCES_M = {2, 8, 30, 120, 480};
+
+    /** Ground resolution of one pixel at zoom 0 on the equator, in meters. */
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156_543.03392;
+
+    private final CompactRoute route;
+    private final int firstLeg;
+    private final double latitude;
+    private final List<List<LatLng>> levels;
+
+    private RouteGeometry(CompactRoute route, int firstLeg, double latitude, List<List<LatLng>> levels) {
+        this.route = route;
+        this.firstLeg = firstLeg;
+        this.latitude = latitude;
+        this.levels = levels;
+    }
+
+    /**
+     * Computes the Douglas-Peucker importance of every point of a route, once per route.
+     * Call it from a background thread.
+     *
+     * @param route the route to simplify
+     * @return the importance of each point, to pass to {@link #prepare}
+     */
+    public static double[] computeImportance(CompactRoute route) {
+        int count = route.getPointCount();
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = route.getLatitude(i);
+            lngs[i] = route.getLongitude(i);
+        }
+        return PolylineSimplifier.importance(lats, lngs, count, TOLERANCES_M[0]);
+    }
+
+    /**
+     * Builds the levels of detail of the route, from the start of {@code firstLeg} to its end.
+     * Call it from a background thread.
+     *
+     * @param route      the route to draw
+     * @param importance the result of {@link #computeImportance} for this route
+     * @param firstLeg   index of the first leg to draw (the number of completed stops)
+     * @return the prepared geometry
+     */
+    public static RouteGeometry prepare(CompactRoute route, double[] importance, int firstLeg) {
+        int leg = Math.min(firstLeg, route.getLegCount());
+        // A leg starts one point after the end of the previous one (shared points are stored once)
+        int start = leg > 0 ? Math.max(route.getLegPointStart(leg) - 1, 0) : 0;
+
+        List<List<LatLng>> levels = new ArrayList<>(TOLERANCES_M.length);
+        for (double tolerance : TOLERANCES_M) {
+            int[] kept = PolylineSimplifier.select(importance, start, tolerance);
+            List<LatLng> points = new ArrayList<>(kept.length);
+            for (int index : kept) {
+                points.add(new LatLng(route.getLatitude(index), route.getLongitude(index)));
+            }
+            levels.add(Collections.unmodifiableList(points));
+        }
+
+        double latitude = route.getPointCount() > 0 ? route.getLatitude(start) : 0;
+        return new RouteGeometry(route, firstLeg, latitude, levels);
+    }
+
+    /** @return the route this geometry was prepared from */
+    public CompactRoute getRoute() {
+        return route;
+    }
+
+    /** @return the index of the first drawn leg (the number of completed stops) */
+    public int getFirstLeg() {
+        return firstLeg;
+    }
+
+    /**
+     * Returns the coarsest level whose tolerance is below one pixel at the given zoom.
+     *
+     * @param zoom the camera zoom
+     * @return a level index, {@code 0} being the finest
+     */
+    public int levelForZoom(float zoom) {
+        double metersPerPixel = METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+        int level = 0;
+        while (level + 1 < TOLERANCES_M.length && TOLERANCES_M[level + 1] <= metersPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @param level a level index, as returned by {@link #levelForZoom}
+     * @return the points of that level, in driving order (read-only)
+     */
+    public List<LatLng> getPoints(int level) {
+        return levels.get(level);
+    }
+}
@@ -0,0 +1,180 @@
+package utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.camera.lifecycle.ProcessCameraProvider;
+
+import com.example.app_cll_livreur.BuildConfig;
+import com.google.android.gms.maps.MapsInitializer;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import data.api.HttpClientProvider;
+import data.api.maps.GoogleMapsServices;
+import okhttp3.Request;
+import okhttp3.Response;
+import ui.QrCodeAnalyzer;
+
+/**
+ * Warms up, once per process, the subsystems that otherwise stall their first use.
+ * <p>
+ * {@link #start} is called after login and runs three stages, one after the other, on
+ * background threads, each component of a stage on its own thread with its own priority:
+ * </p>
+ * <ol>
+ *     <li>connections: a {@code HEAD} request to the Amazi and Google Maps hosts opens
+ *     the TCP/TLS connection in the shared pool of {@link HttpClientProvider}, so the
+ *     first scan does not pay the handshake;</li>
+ *     <li>scanner: the {@link ProcessCameraProvider} is initialized, and the ML Kit
+ *     barcode library and model are loaded by decoding a blank image;</li>
+ *     <li>map: the Google Maps renderer is initialized with {@link MapsInitializer}, on
+ *     the main thread as it requires.</li>
+ * </ol>
+ * <p>
+ * A stage waits at most {@link #STAGE_TIMEOUT_SECONDS} for its components. Failures are
+ * only logged: the subsystem then starts cold, as it would have without warm-up. The
+ * duration of each component is logged and kept in {@link #getTimings()}.
+ * </p>
+ */
+public final class StartupWarmUp {
+
+    private static final String TAG = "StartupWarmUp";
+
+    /** Longest wait for the components of a stage. */
+    private static final long STAGE_TIMEOUT_SECONDS = 10;
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /** A subsystem to warm up. */
+    private interface WarmUpTask {
+        void run() throws Exception;
+    }
+
+    /** A task with its name and the priority of its thread. */
+    private static final class Component {
+        final String name;
+        final int priority;
+        final WarmUpTask task;
+
+        Component(String name, int priority, WarmUpTask task) {
+            this.name = name;
+            this.priority = priority;
+            this.task = task;
+        }
+    }
+
+    private StartupWarmUp() { }
+
+    /**
+     * Starts the warm-up in the background, unless it already ran in this process.
+     *
+     * @param context any context; only its application context is retained
+     */
+    public static void start(Context context) {
+        if (!started.compareAndSet(false, true)) return;
+
+        Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            long start = System.nanoTime();
+
+            runStage("connexions", List.of(
+                    new Component("Amazi", Process.THREAD_PRIORITY_DEFAULT,
+                            () -> preconnect(BuildConfig.AMAZI_BASE_URL)),
+                    new Component("Google Maps API", Process.THREAD_PRIORITY_DEFAULT,
+                            () -> preconnect(GoogleMapsServices.BASE_URL))));
+            runStage("scanner", List.of(
+                    new Component("CameraX", Process.THREAD_PRIORITY_BACKGROUND,
+                            () -> ProcessCameraProvider.getInstance(appContext).get(STAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS)),
+                    new Component("ML Kit", Process.THREAD_PRIORITY_BACKGROUND,
+                            StartupWarmUp::loadBarcodeModel)));
+            runStage("carte", List.of(
+                    new Component("Google Maps", Process.THREAD_PRIORITY_LOWEST,
+                            () -> initializeMaps(appContext))));
+
+            Log.d(TAG, "Préchauffage terminé en " + (System.nanoTime() - start) / 1_000_000 + " ms : " + getTimings());
+        }, "warm-up");
+        thread.start();
+    }
+
+    /** @return the duration of each component warmed up so far, in milliseconds, in order */
+    public static Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+        }
+    }
+
+    private static void runStage(String stage, List<Component> components) {
+        CountDownLatch done = new CountDownLatch(components.size());
+        for (Component component : components) {
+            new Thread(() -> {
+                Process.setThreadPriority(component.priority);
+                long start = System.nanoTime();
+                try {
+                    component.task.run();
+                    long elapsed = (System.nanoTime() - start) / 1_000_000;
+                    timings.put(component.name, elapsed);
+                    Log.d(TAG, component.name + " prêt en " + elapsed + " ms");
+                } catch (Exception e) {
+                    Log.w(TAG, "Préchauffage de " + component.name + " impossible : " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "warm-up-" + stage).start();
+        }
+
+        try {
+            if (!done.await(STAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Étape " + stage + " incomplète après " + STAGE_TIMEOUT_SECONDS + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Opens a connection to the host of {@code url} in the shared pool. */
+    private static void preconnect(String url) throws Exception {
+        Request request = new Request.Builder().url(url).head().build();
+        try (Response response = HttpClientProvider.getBaseClient().newCall(request).execute()) {
+            Log.d(TAG, "Connexion ouverte vers " + request.url().host() + " (HTTP " + response.code() + ")");
+        }
+    }
+
+    /** Loads the ML Kit barcode library and model by decoding a blank image. */
+    private static void loadBarcodeModel() throws Exception {
+        BarcodeScanner scanner = BarcodeScanning.getClient(QrCodeAnalyzer.OPTIONS);
+        try {
+            Bitmap blank = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+            Tasks.await(scanner.process(InputImage.fromBitmap(blank, 0)), STAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /** Initializes the Maps renderer on the main thread and waits for it. */
+    private static void initializeMaps(Context appContext) throws Exception {
+        CountDownLatch ready = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(() -> MapsInitializer.initialize(appContext,
+                MapsInitializer.Renderer.LATEST, renderer -> ready.countDown()));
+        if (!ready.await(STAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("renderer non initialisé");
+        }
+    }
+}
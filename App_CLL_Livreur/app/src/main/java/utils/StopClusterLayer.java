@@ -0,0 +1,162 @@
+package utils;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.clustering.ClusterManager;
+import com.google.maps.android.clustering.algo.NonHierarchicalViewBasedAlgorithm;
+import com.google.maps.android.clustering.view.DefaultClusterRenderer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Stop markers of a large tour, rendered through {@code android-maps-utils} clustering.
+ * <p>
+ * Stops are grouped into clusters below {@link #CLUSTER_MAX_ZOOM}; above it, each stop
+ * gets its numbered pin. The {@link NonHierarchicalViewBasedAlgorithm} only clusters and
+ * renders the stops inside the visible region, enlarged by {@link #VIEWPORT_MARGIN} on
+ * each side, and is refreshed when the camera goes idle; the other stops have no marker.
+ * </p>
+ * <p>
+ * Used by {@link MapSceneManager}; main thread only.
+ * </p>
+ */
+final class StopClusterLayer {
+
+    /** Zoom from which stops are always shown as individual pins. */
+    static final float CLUSTER_MAX_ZOOM = 15f;
+
+    /** Extra area rendered around the viewport, as a fraction of its size on each side. */
+    private static final float VIEWPORT_MARGIN = 0.25f;
+
+    private final ClusterManager<StopItem> clusterManager;
+    private final StopRenderer renderer;
+    private final Map<MapSceneManager.StopKey, StopItem> items = new HashMap<>();
+
+    /** A stop on the map with the number of its position in the waypoint order. */
+    static final class StopItem implements ClusterItem {
+        private final LatLng position;
+        private int number;
+
+        StopItem(LatLng position, int number) {
+            this.position = position;
+            this.number = number;
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return position;
+        }
+
+        @Override
+        public String getTitle() {
+            return "Arrêt " + number;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+
+        public Float getZIndex() {
+            return null;
+        }
+    }
+
+    /** Draws single stops as numbered pins, and clusters only below {@link #CLUSTER_MAX_ZOOM}. */
+    private static final class StopRenderer extends DefaultClusterRenderer<StopItem> {
+        private volatile float zoom;
+
+        StopRenderer(Context context, GoogleMap map, ClusterManager<StopItem> clusterManager) {
+            super(context, map, clusterManager);
+        }
+
+        @Override
+        protected void onBeforeClusterItemRendered(StopItem item, MarkerOptions markerOptions) {
+            markerOptions.icon(MapUtils.createPinMarker(item.number)).title(item.getTitle());
+        }
+
+        @Override
+        protected void onClusterItemUpdated(StopItem item, Marker marker) {
+            marker.setIcon(MapUtils.createPinMarker(item.number));
+            marker.setTitle(item.getTitle());
+        }
+
+        @Override
+        protected boolean shouldRenderAsCluster(Cluster<StopItem> cluster) {
+            // Called from the renderer's background thread: the zoom is read from a field
+            return zoom < CLUSTER_MAX_ZOOM && super.shouldRenderAsCluster(cluster);
+        }
+    }
+
+    StopClusterLayer(Context context, GoogleMap map) {
+        clusterManager = new ClusterManager<>(context, map);
+
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        float scale = 1 + 2 * VIEWPORT_MARGIN;
+        int widthDp = (int) (metrics.widthPixels / metrics.density * scale);
+        int heightDp = (int) (metrics.heightPixels / metrics.density * scale);
+        clusterManager.setAlgorithm(new NonHierarchicalViewBasedAlgorithm<>(widthDp, heightDp));
+
+        renderer = new StopRenderer(context, map, clusterManager);
+        renderer.zoom = map.getCameraPosition().zoom;
+        clusterManager.setRenderer(renderer);
+    }
+
+    /**
+     * Applies a new set of numbered stops, adding, removing or renumbering only the
+     * items that changed, then re-clusters.
+     *
+     * @param wanted the number to show for each stop
+     */
+    void setStops(Map<MapSceneManager.StopKey, Integer> wanted) {
+        Iterator<Map.Entry<MapSceneManager.StopKey, StopItem>> it = items.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<MapSceneManager.StopKey, StopItem> entry = it.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                clusterManager.removeItem(entry.getValue());
+                it.remove();
+            }
+        }
+
+        for (Map.Entry<MapSceneManager.StopKey, Integer> entry : wanted.entrySet()) {
+            int number = entry.getValue();
+            StopItem item = items.get(entry.getKey());
+            if (item == null) {
+                item = new StopItem(entry.getKey().position, number);
+                items.put(entry.getKey(), item);
+                clusterManager.addItem(item);
+            } else if (item.number != number) {
+                item.number = number;
+                clusterManager.updateItem(item);
+            }
+        }
+
+        clusterManager.cluster();
+    }
+
+    /**
+     * Re-clusters for the new viewport and zoom. Meant for the camera idle listener.
+     *
+     * @param zoom the camera zoom
+     */
+    void onCameraIdle(float zoom) {
+        renderer.zoom = zoom;
+        clusterManager.onCameraIdle();
+    }
+
+    /** Removes every stop from the map. */
+    void clear() {
+        items.clear();
+        clusterManager.clearItems();
+        clusterManager.cluster();
+    }
+}
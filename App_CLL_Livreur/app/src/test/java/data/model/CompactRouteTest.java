@@ -0,0 +1,90 @@
+package data.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/** Unit tests for {@link CompactRoute}. */
+public class CompactRouteTest {
+
+    /** A route through the given points (e5 units, on the diagonal), with its legs. */
+    private static CompactRoute route(int[] points, int[] legPointStart, int[] distances) {
+        int[] durations = new int[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            durations[i] = distances[i] / 10;
+        }
+        return new CompactRoute(distances, durations, legPointStart, points.clone(), points.clone(),
+                points.length, new int[]{0});
+    }
+
+    @Test
+    public void concat_dropsSharedJunctionPoint() {
+        CompactRoute first = route(new int[]{0, 1, 2}, new int[]{0, 3}, new int[]{100});
+        CompactRoute second = route(new int[]{2, 3, 4}, new int[]{0, 2, 3}, new int[]{200, 300});
+
+        CompactRoute joined = CompactRoute.concat(new CompactRoute[]{first, second}, new int[]{1, 0});
+
+        assertEquals(5, joined.getPointCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, joined.getLatitudeE5(i));
+            assertEquals(i, joined.getLongitudeE5(i));
+        }
+        assertEquals(3, joined.getLegCount());
+        assertEquals(100, joined.getLegDistance(0));
+        assertEquals(200, joined.getLegDistance(1));
+        assertEquals(300, joined.getLegDistance(2));
+        assertEquals(30, joined.getLegDuration(2));
+
+        // Leg i covers the points from getLegPointStart(i) - 1 to getLegPointStart(i + 1) - 1
+        assertEquals(0, joined.getLegPointStart(0));
+        assertEquals(3, joined.getLegPointStart(1));
+        assertEquals(4, joined.getLegPointStart(2));
+        assertEquals(5, joined.getLegPointStart(3));
+        // The first leg of the second segment starts at the junction point
+        assertEquals(2, joined.getLatitudeE5(joined.getLegPointStart(1) - 1));
+    }
+
+    @Test
+    public void concat_keepsDistinctBoundaryPoints() {
+        CompactRoute first = route(new int[]{0, 1}, new int[]{0, 2}, new int[]{100});
+        CompactRoute second = route(new int[]{5, 6, 7}, new int[]{0, 1, 3}, new int[]{200, 300});
+
+        CompactRoute joined = CompactRoute.concat(new CompactRoute[]{first, second}, new int[]{0, 1});
+
+        assertEquals(5, joined.getPointCount());
+        assertEquals(5, joined.getLatitudeE5(2));
+        assertEquals(2, joined.getLegPointStart(1));
+        assertEquals(3, joined.getLegPointStart(2));
+        assertEquals(5, joined.getLegPointStart(3));
+    }
+
+    @Test
+    public void concat_copiesWaypointOrder() {
+        int[] order = {2, 0, 1};
+        CompactRoute joined = CompactRoute.concat(new CompactRoute[]{
+                route(new int[]{0, 1}, new int[]{0, 2}, new int[]{100})}, order);
+        order[0] = 9;
+
+        assertEquals(3, joined.getWaypointCount());
+        assertEquals(2, joined.getWaypoint(0));
+        assertEquals(1, joined.getWaypoint(2));
+    }
+
+    @Test
+    public void withWaypointOrder_sharesGeometry() {
+        CompactRoute route = route(new int[]{0, 1, 2}, new int[]{0, 2, 3}, new int[]{100, 200});
+        int[] order = {4, 7};
+
+        CompactRoute reordered = route.withWaypointOrder(order);
+        order[0] = 9;
+
+        assertEquals(2, reordered.getWaypointCount());
+        assertEquals(4, reordered.getWaypoint(0));
+        assertEquals(7, reordered.getWaypoint(1));
+        assertEquals(0, route.getWaypoint(0));
+        assertEquals(route.getPointCount(), reordered.getPointCount());
+        assertEquals(route.getLegCount(), reordered.getLegCount());
+        assertEquals(route.getLegPointStart(1), reordered.getLegPointStart(1));
+        assertEquals(route.getLegDistance(1), reordered.getLegDistance(1));
+    }
+}
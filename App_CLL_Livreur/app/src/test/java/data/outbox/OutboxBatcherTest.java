@@ -0,0 +1,84 @@
+package data.outbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Unit tests for {@link OutboxBatcher}. */
+public class OutboxBatcherTest {
+
+    private static OutboxEntry status(int colisId, int statut) {
+        return OutboxEntry.statusUpdate(1, colisId, "livreur", statut);
+    }
+
+    private static OutboxEntry deletion(int colisId) {
+        return OutboxEntry.deletion(1, colisId);
+    }
+
+    @Test
+    public void coalesce_keepsDeleteThenStatusInOrder() {
+        OutboxEntry delete = deletion(7);
+        OutboxEntry undo = status(7, 1);
+        List<OutboxEntry> survivors = new ArrayList<>();
+        List<String> superseded = new ArrayList<>();
+
+        OutboxBatcher.coalesce(Arrays.asList(delete, undo), survivors, superseded);
+
+        assertEquals(Arrays.asList(delete, undo), survivors);
+        assertTrue(superseded.isEmpty());
+    }
+
+    @Test
+    public void coalesce_dropsSupersededEntries() {
+        OutboxEntry firstStatus = status(1, 1);
+        OutboxEntry lastStatus = status(1, 2);
+        OutboxEntry statusBeforeDelete = status(2, 1);
+        OutboxEntry deleteAfterStatus = deletion(2);
+        OutboxEntry firstDelete = deletion(3);
+        OutboxEntry lastDelete = deletion(3);
+        List<OutboxEntry> survivors = new ArrayList<>();
+        List<String> superseded = new ArrayList<>();
+
+        OutboxBatcher.coalesce(Arrays.asList(firstStatus, statusBeforeDelete, firstDelete, lastStatus,
+                deleteAfterStatus, lastDelete), survivors, superseded);
+
+        assertEquals(Arrays.asList(lastStatus, deleteAfterStatus, lastDelete), survivors);
+        assertEquals(3, superseded.size());
+        assertTrue(superseded.containsAll(Arrays.asList(
+                firstStatus.getId(), statusBeforeDelete.getId(), firstDelete.getId())));
+    }
+
+    @Test
+    public void coalesce_statusDeleteStatus_keepsDeleteThenLastStatus() {
+        OutboxEntry status = status(5, 2);
+        OutboxEntry delete = deletion(5);
+        OutboxEntry undo = status(5, 1);
+        OutboxEntry other = status(6, 2);
+        List<OutboxEntry> survivors = new ArrayList<>();
+        List<String> superseded = new ArrayList<>();
+
+        OutboxBatcher.coalesce(Arrays.asList(status, delete, other, undo), survivors, superseded);
+
+        assertEquals(Arrays.asList(delete, other, undo), survivors);
+        assertEquals(Arrays.asList(status.getId()), superseded);
+    }
+
+    @Test
+    public void isRetryable_retriesTransientAndAuthenticationErrors() {
+        assertTrue(OutboxBatcher.isRetryable(401));
+        assertTrue(OutboxBatcher.isRetryable(403));
+        assertTrue(OutboxBatcher.isRetryable(408));
+        assertTrue(OutboxBatcher.isRetryable(429));
+        assertTrue(OutboxBatcher.isRetryable(503));
+        assertFalse(OutboxBatcher.isRetryable(200));
+        assertFalse(OutboxBatcher.isRetryable(400));
+        assertFalse(OutboxBatcher.isRetryable(404));
+        assertFalse(OutboxBatcher.isRetryable(409));
+    }
+}
@@ -0,0 +1,116 @@
+package route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Unit tests for {@link OffRouteDetector}. */
+public class OffRouteDetectorTest {
+
+    private static final double LAT = 50.0;
+    private static final double LNG = 5.0;
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+
+    /** A single leg going east from (LAT, LNG), about 1 km long. */
+    private static OffRouteDetector newDetector() {
+        int count = 11;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = LAT;
+            lngs[i] = LNG + i * 0.0014;
+        }
+        return OffRouteDetector.fromGeometry(lats, lngs, count, new int[]{0, count});
+    }
+
+    /** Latitude of a point {@code meters} north of the route. */
+    private static double north(double meters) {
+        return LAT + meters / METERS_PER_DEGREE;
+    }
+
+    @Test
+    public void distanceToLeg_measuresOffset() {
+        OffRouteDetector detector = newDetector();
+
+        assertEquals(40, detector.distanceToLeg(north(40), LNG + 0.005, 0), 0.5);
+        assertEquals(0, detector.distanceToLeg(LAT, LNG + 0.007, 0), 0.5);
+    }
+
+    @Test
+    public void onLocation_needsConfirmationFixes() {
+        OffRouteDetector detector = newDetector();
+
+        assertFalse(detector.onLocation(north(80), LNG + 0.005, 5, 0, 0));
+        assertFalse(detector.onLocation(north(80), LNG + 0.006, 5, 1_000, 0));
+        assertFalse(detector.isOffRoute());
+        assertTrue(detector.onLocation(north(80), LNG + 0.007, 5, 2_000, 0));
+    }
+
+    @Test
+    public void onLocation_betweenThresholds_keepsCount() {
+        OffRouteDetector detector = newDetector();
+
+        detector.onLocation(north(80), LNG + 0.005, 5, 0, 0);
+        detector.onLocation(north(80), LNG + 0.005, 5, 1_000, 0);
+        // Between ON_ROUTE_M and OFF_ROUTE_M: neither back on the route nor off it
+        assertFalse(detector.onLocation(north(40), LNG + 0.005, 5, 2_000, 0));
+        assertTrue(detector.onLocation(north(80), LNG + 0.005, 5, 3_000, 0));
+    }
+
+    @Test
+    public void onLocation_backOnRoute_resetsCount() {
+        OffRouteDetector detector = newDetector();
+
+        detector.onLocation(north(80), LNG + 0.005, 5, 0, 0);
+        detector.onLocation(north(80), LNG + 0.005, 5, 1_000, 0);
+        assertFalse(detector.onLocation(north(10), LNG + 0.005, 5, 2_000, 0));
+        assertFalse(detector.onLocation(north(80), LNG + 0.005, 5, 3_000, 0));
+        assertFalse(detector.onLocation(north(80), LNG + 0.005, 5, 4_000, 0));
+        assertTrue(detector.onLocation(north(80), LNG + 0.005, 5, 5_000, 0));
+    }
+
+    @Test
+    public void onLocation_accuracyWidensThreshold() {
+        OffRouteDetector detector = newDetector();
+
+        // 70 m is beyond OFF_ROUTE_M, but within it plus the 30 m accuracy allowance
+        for (int i = 0; i < 5; i++) {
+            assertFalse(detector.onLocation(north(70), LNG + 0.005, 30, i * 1_000L, 0));
+        }
+        // Fixes less accurate than MAX_ACCURACY_M are ignored
+        for (int i = 5; i < 10; i++) {
+            assertFalse(detector.onLocation(north(90), LNG + 0.005, 150, i * 1_000L, 0));
+        }
+    }
+
+    @Test
+    public void onLocation_limitsRerouteRate() {
+        OffRouteDetector detector = newDetector();
+        long time = 0;
+        for (int i = 0; i < 2; i++) {
+            detector.onLocation(north(80), LNG + 0.005, 5, time, 0);
+            time += 1_000;
+        }
+        assertTrue(detector.onLocation(north(80), LNG + 0.005, 5, time, 0));
+        long rerouteTime = time;
+
+        for (int i = 0; i < 5; i++) {
+            time += 1_000;
+            assertFalse(detector.onLocation(north(80), LNG + 0.005, 5, time, 0));
+        }
+        assertTrue(detector.isOffRoute());
+        assertTrue(detector.onLocation(north(80), LNG + 0.005, 5,
+                rerouteTime + OffRouteDetector.MIN_REROUTE_INTERVAL_MS, 0));
+    }
+
+    @Test
+    public void onLocation_ignoresUnknownLeg() {
+        OffRouteDetector detector = newDetector();
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(detector.onLocation(north(80), LNG + 0.005, 5, i * 1_000L, 1));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package route;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Unit tests for {@link PolylineSimplifier}. */
+public class PolylineSimplifierTest {
+
+    private static final double[] TOLERANCES = {0, 1, 5, 12.5, 30, 80, 200, 1_000};
+
+    @Test
+    public void select_matchesDouglasPeucker() {
+        Random random = new Random(3);
+        int count = 400;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        double lat = 50.63;
+        double lng = 5.57;
+        for (int i = 0; i < count; i++) {
+            lat += (random.nextDouble() - 0.3) * 0.001;
+            lng += (random.nextDouble() - 0.5) * 0.001;
+            lats[i] = lat;
+            lngs[i] = lng;
+        }
+
+        double[] importance = PolylineSimplifier.importance(lats, lngs, count, 0);
+
+        for (double tolerance : TOLERANCES) {
+            assertArrayEquals("tolerance " + tolerance, douglasPeucker(lats, lngs, count, tolerance),
+                    PolylineSimplifier.select(importance, 0, tolerance));
+        }
+    }
+
+    @Test
+    public void select_alwaysKeepsEnds() {
+        double[] lats = {50.0, 50.0, 50.0, 50.0};
+        double[] lngs = {5.0, 5.001, 5.002, 5.003};
+
+        double[] importance = PolylineSimplifier.importance(lats, lngs, lats.length, 0);
+
+        // Collinear points are dropped at any tolerance
+        assertArrayEquals(new int[]{0, 3}, PolylineSimplifier.select(importance, 0, 0));
+        assertArrayEquals(new int[]{2, 3}, PolylineSimplifier.select(importance, 2, 0));
+    }
+
+    @Test
+    public void importance_ofShortPolylines() {
+        assertEquals(0, PolylineSimplifier.importance(new double[0], new double[0], 0, 0).length);
+        double[] two = PolylineSimplifier.importance(new double[]{50, 51}, new double[]{5, 6}, 2, 0);
+        assertArrayEquals(new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY}, two, 0);
+    }
+
+    /** Plain recursive Douglas-Peucker on the same projection as {@link PolylineSimplifier}. */
+    private static int[] douglasPeucker(double[] lats, double[] lngs, int count, double tolerance) {
+        double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        double cosLat = Math.cos(Math.toRadians(lats[0]));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (lngs[i] - lngs[0]) * metersPerDegree * cosLat;
+            y[i] = (lats[i] - lats[0]) * metersPerDegree;
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        split(x, y, 0, count - 1, tolerance, keep);
+
+        int[] kept = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) kept[n++] = i;
+        }
+        return Arrays.copyOf(kept, n);
+    }
+
+    private static void split(double[] x, double[] y, int first, int last, double tolerance, boolean[] keep) {
+        int farthest = -1;
+        double maxDistance = -1;
+        for (int i = first + 1; i < last; i++) {
+            double d = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+            if (d > maxDistance) {
+                maxDistance = d;
+                farthest = i;
+            }
+        }
+        if (farthest < 0 || maxDistance <= tolerance) return;
+
+        keep[farthest] = true;
+        split(x, y, first, farthest, tolerance, keep);
+        split(x, y, farthest, last, tolerance, keep);
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+}
@@ -0,0 +1,170 @@
+package route;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/** Unit tests for {@link RouteOptimizer}. */
+public class RouteOptimizerTest {
+
+    /** A generous budget, so the results do not depend on the speed of the machine. */
+    private static final long BUDGET_MS = 1_000;
+
+    @Test
+    public void optimize_returnsPermutationOfStops() {
+        Random random = new Random(42);
+        int n = 60;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 50.60 + random.nextDouble() * 0.05;
+            lngs[i] = 5.50 + random.nextDouble() * 0.05;
+        }
+
+        List<Integer> order = new RouteOptimizer(BUDGET_MS).optimize(50.60, 5.50, 50.65, 5.55, lats, lngs);
+
+        assertEquals(n, order.size());
+        boolean[] seen = new boolean[n];
+        for (int stop : order) {
+            assertTrue("index out of range: " + stop, stop >= 0 && stop < n);
+            assertTrue("stop visited twice: " + stop, !seen[stop]);
+            seen[stop] = true;
+        }
+    }
+
+    @Test
+    public void optimize_withoutStops_returnsEmptyOrder() {
+        int[] order = new RouteOptimizer().optimize(DistanceMatrix.haversine(50.6, 5.5, 50.7, 5.6,
+                new double[0], new double[0]));
+
+        assertEquals(0, order.length);
+    }
+
+    @Test
+    public void optimize_collinearStops_visitsThemInLineOrder() {
+        // Stops on the segment from the origin to the destination, given shuffled
+        double[] positions = {0.7, 0.1, 0.5, 0.9, 0.3, 0.2, 0.8, 0.4, 0.6};
+        double[] lats = new double[positions.length];
+        double[] lngs = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            lats[i] = 50.0;
+            lngs[i] = 5.0 + positions[i] * 0.1;
+        }
+
+        List<Integer> order = new RouteOptimizer(BUDGET_MS).optimize(50.0, 5.0, 50.0, 5.1, lats, lngs);
+
+        for (int i = 1; i < order.size(); i++) {
+            assertTrue(positions[order.get(i - 1)] < positions[order.get(i)]);
+        }
+    }
+
+    @Test
+    public void reoptimize_keepsStopsAndDoesNotIncreaseCost() {
+        Random random = new Random(7);
+        int n = 40;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 50.60 + random.nextDouble() * 0.05;
+            lngs[i] = 5.50 + random.nextDouble() * 0.05;
+            order[i] = i + 1;
+        }
+        DistanceMatrix matrix = DistanceMatrix.haversine(50.60, 5.50, 50.65, 5.55, lats, lngs);
+
+        int[] improved = new RouteOptimizer(BUDGET_MS).reoptimize(matrix, order);
+
+        int[] sorted = improved.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(order, sorted);
+        assertTrue(RouteOptimizer.pathCost(matrix, path(improved, n)) <= RouteOptimizer.pathCost(matrix, path(order, n)));
+    }
+
+    @Test
+    public void reoptimize_asymmetricMatrix_keepsOptimalOrder() {
+        Random random = new Random(11);
+        RouteOptimizer optimizer = new RouteOptimizer(BUDGET_MS);
+        for (int run = 0; run < 50; run++) {
+            int n = 6;
+            int size = n + 2;
+            double[] costs = new double[size * size];
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = 1 + random.nextInt(100);
+            }
+            DistanceMatrix matrix = new DistanceMatrix(size, costs);
+            int[] optimal = bestOrder(matrix, n);
+
+            // No move can shorten an optimal tour; a reversal priced as symmetric would
+            int[] improved = optimizer.reoptimize(matrix, optimal);
+
+            assertEquals(RouteOptimizer.pathCost(matrix, path(optimal, n)),
+                    RouteOptimizer.pathCost(matrix, path(improved, n)), 1e-9);
+        }
+    }
+
+    @Test
+    public void distanceMatrix_detectsAsymmetry() {
+        assertTrue(new DistanceMatrix(2, new double[]{0, 3, 3, 0}).isSymmetric());
+        assertFalse(new DistanceMatrix(2, new double[]{0, 3, 4, 0}).isSymmetric());
+        assertTrue(DistanceMatrix.haversine(50.0, 5.0, 50.1, 5.1,
+                new double[]{50.05}, new double[]{5.02}).isSymmetric());
+    }
+
+    @Test
+    public void pathCost_sumsConsecutiveCosts() {
+        DistanceMatrix matrix = new DistanceMatrix(3, new double[]{
+                0, 1, 5,
+                1, 0, 2,
+                5, 2, 0});
+
+        assertEquals(3, RouteOptimizer.pathCost(matrix, new int[]{0, 1, 2}), 1e-9);
+        assertEquals(5, RouteOptimizer.pathCost(matrix, new int[]{0, 2}), 1e-9);
+    }
+
+    /** Finds the cheapest stop order by trying every permutation. */
+    private static int[] bestOrder(DistanceMatrix matrix, int stops) {
+        int[] order = new int[stops];
+        for (int i = 0; i < stops; i++) {
+            order[i] = i + 1;
+        }
+        int[] best = order.clone();
+        permute(matrix, order, 0, best);
+        return best;
+    }
+
+    private static void permute(DistanceMatrix matrix, int[] order, int k, int[] best) {
+        if (k == order.length) {
+            int stops = order.length;
+            if (RouteOptimizer.pathCost(matrix, path(order, stops)) < RouteOptimizer.pathCost(matrix, path(best, stops))) {
+                System.arraycopy(order, 0, best, 0, stops);
+            }
+            return;
+        }
+        for (int i = k; i < order.length; i++) {
+            swap(order, k, i);
+            permute(matrix, order, k + 1, best);
+            swap(order, k, i);
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+
+    /** Adds the origin and the destination around a stop order. */
+    private static int[] path(int[] order, int stops) {
+        int[] path = new int[order.length + 2];
+        System.arraycopy(order, 0, path, 1, order.length);
+        path[path.length - 1] = stops + 1;
+        return path;
+    }
+}
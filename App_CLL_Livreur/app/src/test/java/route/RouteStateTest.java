@@ -0,0 +1,106 @@
+package route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Unit tests for {@link RouteState}. */
+public class RouteStateTest {
+
+    /** Origin, stops 2, 0, 1, then the destination: four legs. */
+    private static RouteState newState() {
+        return RouteState.fromLegs(new int[]{100, 200, 300, 400}, new int[]{10, 20, 30, 40}, new int[]{2, 0, 1});
+    }
+
+    @Test
+    public void fromLegs_computesTotals() {
+        RouteState state = newState();
+
+        assertEquals(3, state.getStopCount());
+        assertEquals(0, state.getCompletedStops());
+        assertEquals(2, state.getCurrentStop());
+        assertEquals(0, state.getCurrentLeg());
+        assertEquals(100, state.getCurrentLegDistance());
+        assertEquals(10, state.getCurrentLegDuration());
+        assertEquals(1000, state.getRemainingDistance());
+        assertEquals(100, state.getRemainingDuration());
+    }
+
+    @Test
+    public void completeStop_advancesPrefixSums() {
+        RouteState state = newState();
+
+        assertTrue(state.completeStop());
+        assertEquals(0, state.getCurrentStop());
+        assertEquals(1, state.getCurrentLeg());
+        assertEquals(200, state.getCurrentLegDistance());
+        assertEquals(900, state.getRemainingDistance());
+        assertEquals(90, state.getRemainingDuration());
+
+        assertTrue(state.completeStop());
+        assertTrue(state.completeStop());
+        assertTrue(state.isFinished());
+        assertEquals(-1, state.getCurrentStop());
+        // The last leg, to the destination, is still to drive
+        assertEquals(3, state.getCurrentLeg());
+        assertEquals(400, state.getRemainingDistance());
+        assertEquals(40, state.getRemainingDuration());
+        assertFalse(state.completeStop());
+    }
+
+    @Test
+    public void fromLegs_rejectsMismatchedLegs() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RouteState.fromLegs(new int[]{1, 2}, new int[]{1}, new int[]{0}));
+    }
+
+    @Test
+    public void completeOutOfOrder_setsNewOrder() {
+        RouteState state = RouteState.fromLegs(new int[5], new int[5], new int[]{0, 1, 2, 3});
+
+        state.completeOutOfOrder(2, new int[]{3, 0, 1});
+
+        assertEquals(1, state.getCompletedStops());
+        assertEquals(3, state.getRemainingStops());
+        assertEquals(2, state.getStop(0));
+        assertEquals(3, state.getCurrentStop());
+        assertEquals(0, state.positionOf(2));
+        assertEquals(1, state.positionOf(3));
+        assertEquals(2, state.positionOf(0));
+        assertEquals(3, state.positionOf(1));
+        assertEquals(-1, state.positionOf(4));
+    }
+
+    @Test
+    public void completeOutOfOrder_rejectsInvalidInput() {
+        RouteState state = RouteState.fromLegs(new int[5], new int[5], new int[]{0, 1, 2, 3});
+        state.completeStop();
+
+        // Stop 0 is already completed
+        assertThrows(IllegalArgumentException.class, () -> state.completeOutOfOrder(0, new int[]{1, 3}));
+        // The order must hold the stops left other than the completed one
+        assertThrows(IllegalArgumentException.class, () -> state.completeOutOfOrder(2, new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> state.completeOutOfOrder(2, new int[]{0, 1}));
+        assertThrows(IllegalArgumentException.class, () -> state.completeOutOfOrder(2, new int[]{2, 1}));
+    }
+
+    @Test
+    public void reorderRemaining_changesOnlyStopsLeft() {
+        RouteState state = RouteState.fromLegs(new int[5], new int[5], new int[]{0, 1, 2, 3});
+        state.completeStop();
+
+        state.reorderRemaining(new int[]{3, 1, 2});
+
+        assertEquals(1, state.getCompletedStops());
+        assertEquals(0, state.getStop(0));
+        assertEquals(3, state.getCurrentStop());
+        assertEquals(1, state.positionOf(3));
+        assertEquals(2, state.positionOf(1));
+        assertEquals(3, state.positionOf(2));
+        assertThrows(IllegalArgumentException.class, () -> state.reorderRemaining(new int[]{3, 3, 2}));
+        assertThrows(IllegalArgumentException.class, () -> state.reorderRemaining(new int[]{0, 1, 2}));
+    }
+}
@@ -0,0 +1,271 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the Amazi delivery API, used to exercise the app without the real backend.
+ * <p>
+ * Implements the endpoints of {@code IAmaziAPI}, including the batch endpoint, and honours the
+ * {@code Idempotency-Key} header (a replayed operation is acknowledged but applied only once).
+ * Only depends on the JDK:
+ * </p>
+ * <pre>
+ *   java AmaziStubServer.java [--port 30080] [--no-batch] [--fail-rate 0.2]
+ * </pre>
+ * <ul>
+ *   <li>{@code --no-batch}: answer 404 on the batch endpoint, to test the per-item fallback</li>
+ *   <li>{@code --fail-rate}: probability of answering 503, to test retries and backoff</li>
+ * </ul>
+ */
+public class AmaziStubServer {
+
+    private static final String PREFIX = "/AMAZI/V1/Livraison";
+
+    private final boolean batchEnabled;
+    private final double failRate;
+    private final Random random = new Random();
+    private final Set<String> appliedKeys = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+
+    private AmaziStubServer(boolean batchEnabled, double failRate) {
+        this.batchEnabled = batchEnabled;
+        this.failRate = failRate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 30080;
+        boolean batchEnabled = true;
+        double failRate = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--no-batch": batchEnabled = false; break;
+                case "--fail-rate": failRate = Double.parseDouble(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AmaziStubServer stub = new AmaziStubServer(batchEnabled, failRate);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PREFIX, stub::handle);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        System.out.println("Amazi stub listening on :" + port + " (batch=" + batchEnabled + ", failRate=" + failRate + ")");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        System.out.println(method + " " + PREFIX + path + " " + query + (key != null ? " key=" + key : ""));
+
+        if (failRate > 0 && random.nextDouble() < failRate) {
+            respond(exchange, 503, "{\"message\":\"stub failure\"}");
+            return;
+        }
+
+        try {
+            if ("GET".equals(method) && "/id".equals(path)) {
+                respond(exchange, 200, "1");
+            } else if ("GET".equals(method) && "/colis-detail".equals(path)) {
+                respond(exchange, 200, colisDetail(Integer.parseInt(query.get("colisId"))));
+            } else if ("PUT".equals(method) && "/update-statut".equals(path)) {
+                applyStatus(key, Integer.parseInt(query.get("colisId")), Integer.parseInt(query.get("nouveauStatut")));
+                respond(exchange, 200, "");
+            } else if ("DELETE".equals(method) && "/colis".equals(path)) {
+                applyDelete(key, Integer.parseInt(query.get("colisId")));
+                respond(exchange, 200, "");
+            } else if ("POST".equals(method) && "/batch".equals(path) && batchEnabled) {
+                respond(exchange, 200, batch(readBody(exchange)));
+            } else {
+                respond(exchange, 404, "");
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 400, "{\"message\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    private String colisDetail(int colisId) {
+        return "{\"dateLivraison\":null,\"adresseRue\":\"Rue Peetermans " + (colisId % 80 + 1) + "\","
+                + "\"codePostal\":\"4100\",\"ville\":\"Seraing\",\"pays\":\"Belgique\","
+                + "\"nomLivreur\":\"Client " + colisId + "\",\"etat\":0,\"datePreparation\":null}";
+    }
+
+    @SuppressWarnings("unchecked")
+    private String batch(String body) {
+        Map<String, Object> request = (Map<String, Object>) new JsonReader(body).read();
+        List<Object> operations = (List<Object>) request.get("operations");
+        StringBuilder results = new StringBuilder("{\"resultats\":[");
+        for (int i = 0; i < operations.size(); i++) {
+            Map<String, Object> op = (Map<String, Object>) operations.get(i);
+            String key = (String) op.get("idempotencyKey");
+            int colisId = ((Number) op.get("colisId")).intValue();
+            int code = 200;
+            if ("STATUT".equals(op.get("type"))) {
+                applyStatus(key, colisId, ((Number) op.get("nouveauStatut")).intValue());
+            } else if ("SUPPRESSION".equals(op.get("type"))) {
+                applyDelete(key, colisId);
+            } else {
+                code = 400;
+            }
+            if (i > 0) results.append(',');
+            results.append("{\"idempotencyKey\":\"").append(key).append("\",\"code\":").append(code).append('}');
+        }
+        System.out.println("  batch of " + operations.size() + " operation(s)");
+        return results.append("]}").toString();
+    }
+
+    private void applyStatus(String key, int colisId, int status) {
+        if (key != null && !appliedKeys.add(key)) {
+            System.out.println("  replay ignored: " + key);
+            return;
+        }
+        statuses.put(colisId, status);
+        System.out.println("  colis " + colisId + " -> statut " + status);
+    }
+
+    private void applyDelete(String key, int colisId) {
+        if (key != null && !appliedKeys.add(key)) {
+            System.out.println("  replay ignored: " + key);
+            return;
+        }
+        statuses.remove(colisId);
+        System.out.println("  colis " + colisId + " deleted");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    /** Minimal JSON reader (objects, arrays, strings, numbers, booleans, null). */
+    private static class JsonReader {
+        private final String s;
+        private int pos;
+
+        JsonReader(String s) {
+            this.s = s;
+        }
+
+        Object read() {
+            skipWhitespace();
+            char c = s.charAt(pos);
+            if (c == '{') return readObject();
+            if (c == '[') return readArray();
+            if (c == '"') return readString();
+            if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (s.startsWith("null", pos)) { pos += 4; return null; }
+            return readNumber();
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (s.charAt(pos) == '}') { pos++; return map; }
+            while (true) {
+                skipWhitespace();
+                String name = readString();
+                skipWhitespace();
+                expect(':');
+                map.put(name, read());
+                skipWhitespace();
+                if (s.charAt(pos) == ',') { pos++; continue; }
+                expect('}');
+                return map;
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (s.charAt(pos) == ']') { pos++; return list; }
+            while (true) {
+                list.add(read());
+                skipWhitespace();
+                if (s.charAt(pos) == ',') { pos++; continue; }
+                expect(']');
+                return list;
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (s.charAt(pos) != '"') {
+                char c = s.charAt(pos++);
+                if (c == '\\') {
+                    char e = s.charAt(pos++);
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'u': sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16)); pos += 4; break;
+                        default: sb.append(e);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            pos++;
+            return sb.toString();
+        }
+
+        private Number readNumber() {
+            int start = pos;
+            while (pos < s.length() && "+-.eE0123456789".indexOf(s.charAt(pos)) >= 0) pos++;
+            return Double.parseDouble(s.substring(start, pos));
+        }
+
+        private void expect(char c) {
+            if (s.charAt(pos) != c) throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            pos++;
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import data.api.maps.DirectionsStreamParser;
+import data.model.CompactRoute;
+
+/**
+ * Compares the streaming Directions parser with the former reflective Gson path.
+ * <p>
+ * The Gson path is reproduced as it was in the app: the response is bound to a tree of
+ * {@code Route}/{@code Leg}/{@code Step}/{@code Polyline} objects, then every step
+ * polyline is decoded into a list of points, one object per point. A synthetic
+ * response is generated for a tour of {@code --stops} stops, with the fields Google
+ * returns (instructions, addresses, locations...) so that its size is realistic.
+ * </p>
+ * <p>
+ * For each path it reports the time per parse, the bytes allocated per parse and the
+ * heap still held by the result, which is what the map keeps for the whole tour.
+ * </p>
+ */
+public class DirectionsParseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int stops = 100;
+        int iterations = 200;
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("--stops".equals(args[i])) stops = Integer.parseInt(args[i + 1]);
+            if ("--iterations".equals(args[i])) iterations = Integer.parseInt(args[i + 1]);
+        }
+
+        String json = generateResponse(stops, new Random(42));
+        Gson gson = new Gson();
+        System.out.printf(Locale.ROOT, "Réponse : %d arrêts, %d Ko%n", stops, json.length() / 1024);
+
+        // Warm-up (JIT), and check that both paths see the same geometry
+        int gsonPoints = 0;
+        int streamPoints = 0;
+        for (int i = 0; i < iterations; i++) {
+            gsonPoints = parseWithGson(gson, json).size();
+            streamPoints = DirectionsStreamParser.parse(new JsonReader(new StringReader(json))).getPointCount();
+        }
+        System.out.printf(Locale.ROOT, "Points : Gson %d (avec doublons), flux %d%n", gsonPoints, streamPoints);
+
+        for (int round = 0; round < 3; round++) {
+            measure("Gson + List<LatLng>", iterations, () -> parseWithGson(gson, json));
+            measure("JsonReader -> CompactRoute", iterations,
+                    () -> DirectionsStreamParser.parse(new JsonReader(new StringReader(json))));
+        }
+    }
+
+    private interface Task {
+        Object run() throws Exception;
+    }
+
+    private static void measure(String label, int iterations, Task task) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        Object sink = null;
+        for (int i = 0; i < iterations; i++) {
+            sink = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf(Locale.ROOT, "%-28s %8.2f ms/parse %8d Ko alloués/parse %8d Ko retenus%n", label,
+                elapsed / 1e6 / iterations, allocated / 1024 / iterations, retainedBytes(task) / 1024);
+    }
+
+    /** Approximates the heap held by one result, by keeping 20 of them alive. */
+    private static long retainedBytes(Task task) throws Exception {
+        Object[] results = new Object[20];
+        long before = usedHeap();
+        for (int i = 0; i < results.length; i++) {
+            results[i] = task.run();
+        }
+        long after = usedHeap();
+        if (results[results.length - 1] == null) throw new IllegalStateException("aucun résultat");
+        return (after - before) / results.length;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // --- Former path --------------------------------------------------------------------
+
+    private static List<Point> parseWithGson(Gson gson, String json) {
+        DirectionsResponse response = gson.fromJson(json, DirectionsResponse.class);
+        List<Point> points = new ArrayList<>();
+        for (Route route : response.routes) {
+            for (Leg leg : route.legs) {
+                for (Step step : leg.steps) {
+                    decode(step.polyline.points, points);
+                }
+            }
+        }
+        return points;
+    }
+
+    static class DirectionsResponse {
+        @SerializedName("routes") List<Route> routes;
+    }
+
+    static class Route {
+        @SerializedName("legs") List<Leg> legs;
+        @SerializedName("waypoint_order") List<Integer> waypointOrder;
+    }
+
+    static class Leg {
+        @SerializedName("steps") List<Step> steps;
+        @SerializedName("distance") Value distance;
+        @SerializedName("duration") Value duration;
+    }
+
+    static class Step {
+        @SerializedName("polyline") Polyline polyline;
+    }
+
+    static class Value {
+        @SerializedName("text") String text;
+        @SerializedName("value") int value;
+    }
+
+    static class Polyline {
+        @SerializedName("points") String points;
+    }
+
+    /** Stands for {@code LatLng}: one object per point. */
+    static final class Point {
+        final double latitude;
+        final double longitude;
+
+        Point(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /** Same algorithm as {@code PolyUtil.decode}. */
+    private static void decode(String encoded, List<Point> out) {
+        int index = 0;
+        int lat = 0;
+        int lng = 0;
+        while (index < encoded.length()) {
+            int result = 1;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded.charAt(index++) - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            lat += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 1;
+            shift = 0;
+            do {
+                b = encoded.charAt(index++) - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            lng += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            out.add(new Point(lat * 1e-5, lng * 1e-5));
+        }
+    }
+
+    // --- Synthetic response -------------------------------------------------------------
+
+    private static String generateResponse(int stops, Random random) {
+        StringBuilder json = new StringBuilder(1 << 20);
+        json.append("{\"geocoded_waypoints\":[");
+        for (int i = 0; i < stops + 2; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"geocoder_status\":\"OK\",\"place_id\":\"ChIJ").append(Long.toHexString(random.nextLong()))
+                    .append("\",\"types\":[\"street_address\"]}");
+        }
+        json.append("],\"routes\":[{\"bounds\":{\"northeast\":{\"lat\":50.7,\"lng\":5.7},\"southwest\":{\"lat\":50.5,\"lng\":5.4}},")
+                .append("\"copyrights\":\"Map data ©2025\",\"legs\":[");
+
+        int lat = 5_060_000;
+        int lng = 555_000;
+        for (int leg = 0; leg <= stops; leg++) {
+            if (leg > 0) json.append(',');
+            int steps = 6 + random.nextInt(10);
+            json.append("{\"distance\":{\"text\":\"2,4 km\",\"value\":").append(500 + random.nextInt(4000))
+                    .append("},\"duration\":{\"text\":\"6 min\",\"value\":").append(60 + random.nextInt(600))
+                    .append("},\"end_address\":\"Rue de l'Exemple ").append(leg).append(", 4100 Seraing, Belgique\"")
+                    .append(",\"start_address\":\"Rue du Départ ").append(leg).append(", 4100 Seraing, Belgique\"")
+                    .append(",\"steps\":[");
+            for (int step = 0; step < steps; step++) {
+                if (step > 0) json.append(',');
+                int points = 4 + random.nextInt(30);
+                StringBuilder polyline = new StringBuilder();
+                int prevLat = 0;
+                int prevLng = 0;
+                encodeValue(lat, polyline);
+                encodeValue(lng, polyline);
+                prevLat = lat;
+                prevLng = lng;
+                for (int p = 1; p < points; p++) {
+                    lat += random.nextInt(61) - 30;
+                    lng += random.nextInt(61) - 30;
+                    encodeValue(lat - prevLat, polyline);
+                    encodeValue(lng - prevLng, polyline);
+                    prevLat = lat;
+                    prevLng = lng;
+                }
+                json.append("{\"distance\":{\"text\":\"0,2 km\",\"value\":").append(random.nextInt(500))
+                        .append("},\"duration\":{\"text\":\"1 min\",\"value\":").append(random.nextInt(90))
+                        .append("},\"end_location\":{\"lat\":").append(lat / 1e5).append(",\"lng\":").append(lng / 1e5)
+                        .append("},\"html_instructions\":\"Tourner \\u003cb\\u003eà droite\\u003c/b\\u003e sur ")
+                        .append("\\u003cb\\u003eRue ").append(step).append("\\u003c/b\\u003e\"")
+                        .append(",\"maneuver\":\"turn-right\",\"polyline\":{\"points\":\"")
+                        .append(polyline.toString().replace("\\", "\\\\"))
+                        .append("\"},\"start_location\":{\"lat\":").append(lat / 1e5).append(",\"lng\":").append(lng / 1e5)
+                        .append("},\"travel_mode\":\"DRIVING\"}");
+            }
+            json.append("],\"traffic_speed_entry\":[],\"via_waypoint\":[]}");
+        }
+        json.append("],\"overview_polyline\":{\"points\":\"a~l~Fjk~uOwHJy@P\"},\"summary\":\"N90\",\"warnings\":[],")
+                .append("\"waypoint_order\":[");
+        for (int i = 0; i < stops; i++) {
+            if (i > 0) json.append(',');
+            json.append(i);
+        }
+        json.append("]}],\"status\":\"OK\"}");
+        return json.toString();
+    }
+
+    private static void encodeValue(int value, StringBuilder out) {
+        int v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+}